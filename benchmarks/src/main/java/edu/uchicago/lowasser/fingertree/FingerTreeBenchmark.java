@@ -0,0 +1,129 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the core tree operations on a tree of {@link Elem}s, in two access patterns. The
+ * {@code persistent} benchmarks apply an operation to the same version over and over, as a program
+ * that keeps old versions around does, which defeats any amortization that relies on each version
+ * being used once. The {@code threaded} benchmarks apply it to the result of the previous
+ * invocation, as an ephemeral deque would.
+ *
+ * <p>Lives in the library's package, since the tree itself is package-private.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FingerTreeBenchmark {
+  private static final int INDICES = 1 << 10;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  int size;
+
+  private FingerTree<Integer, Elem<Integer>> tree;
+  private FingerTree<Integer, Elem<Integer>> threaded;
+  private final Elem<Integer> elem = Elem.of(-1);
+  private final int[] indices = new int[INDICES];
+  private int next;
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void buildTree() {
+    Elem<Integer>[] elems = new Elem[size];
+    for (int i = 0; i < size; i++) {
+      elems[i] = Elem.of(i);
+    }
+    tree = FingerTree.fromArray(Measured.<Integer> size(), elems, 0, size);
+    Random random = new Random(0);
+    for (int i = 0; i < INDICES; i++) {
+      indices[i] = random.nextInt(size);
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void resetThreaded() {
+    threaded = tree;
+  }
+
+  @Benchmark
+  public FingerTree<Integer, Elem<Integer>> consPersistent() {
+    return tree.cons(elem);
+  }
+
+  @Benchmark
+  public FingerTree<Integer, Elem<Integer>> snocPersistent() {
+    return tree.snoc(elem);
+  }
+
+  @Benchmark
+  public FingerTree<Integer, Elem<Integer>> consThreaded() {
+    return threaded = threaded.cons(elem);
+  }
+
+  @Benchmark
+  public FingerTree<Integer, Elem<Integer>> snocThreaded() {
+    return threaded = threaded.snoc(elem);
+  }
+
+  @Benchmark
+  public Object viewLPersistent() {
+    return tree.viewL().get().getRemainder();
+  }
+
+  @Benchmark
+  public Object viewLThreaded() {
+    if (threaded.isEmpty()) {
+      threaded = tree;
+    }
+    return threaded = threaded.viewL().get().getRemainder();
+  }
+
+  @Benchmark
+  public Object removeFirstThreaded() {
+    if (threaded.isEmpty()) {
+      threaded = tree;
+    }
+    return threaded = threaded.removeFirst();
+  }
+
+  @Benchmark
+  public Integer index() {
+    return tree.index(indices[next++ & (INDICES - 1)]);
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public FingerTree<Integer, Elem<Integer>> appendTree() {
+    return tree.appendTree(new Elem[] { elem }, tree);
+  }
+
+  @Benchmark
+  public void iterate(Blackhole blackhole) {
+    for (Integer e : tree) {
+      blackhole.consume(e);
+    }
+  }
+
+  @Benchmark
+  public void forEach(Blackhole blackhole) {
+    tree.forEach(blackhole::consume);
+  }
+}
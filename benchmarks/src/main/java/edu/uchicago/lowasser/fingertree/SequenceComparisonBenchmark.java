@@ -0,0 +1,183 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Compares {@link FingerSeq} with {@link ArrayList}, {@link ArrayDeque} and {@link ImmutableList}
+ * on building, random access, iteration and persistent updates. The mutable collections have no
+ * persistent update, so theirs copy the whole collection, which is what a caller needing to keep
+ * the old version would have to do.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SequenceComparisonBenchmark {
+  private static final int INDICES = 1 << 10;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  int size;
+
+  private Integer[] elements;
+  private FingerSeq<Integer> fingerSeq;
+  private ArrayList<Integer> arrayList;
+  private ArrayDeque<Integer> arrayDeque;
+  private ImmutableList<Integer> immutableList;
+  private final int[] indices = new int[INDICES];
+  private int next;
+
+  @Setup
+  public void build() {
+    elements = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      elements[i] = i;
+    }
+    List<Integer> list = Arrays.asList(elements);
+    fingerSeq = FingerSeq.copyOf(list);
+    arrayList = new ArrayList<Integer>(list);
+    arrayDeque = new ArrayDeque<Integer>(list);
+    immutableList = ImmutableList.copyOf(elements);
+    Random random = new Random(0);
+    for (int i = 0; i < INDICES; i++) {
+      indices[i] = random.nextInt(size);
+    }
+  }
+
+  private int nextIndex() {
+    return indices[next++ & (INDICES - 1)];
+  }
+
+  @Benchmark
+  public FingerSeq<Integer> appendAllFingerSeq() {
+    FingerSeq<Integer> seq = FingerSeq.empty();
+    for (Integer e : elements) {
+      seq = seq.append(e);
+    }
+    return seq;
+  }
+
+  @Benchmark
+  public FingerSeq<Integer> builderFingerSeq() {
+    FingerSeq.Builder<Integer> builder = FingerSeq.builder();
+    for (Integer e : elements) {
+      builder.add(e);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public ArrayList<Integer> appendAllArrayList() {
+    ArrayList<Integer> list = new ArrayList<Integer>();
+    for (Integer e : elements) {
+      list.add(e);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public ArrayDeque<Integer> appendAllArrayDeque() {
+    ArrayDeque<Integer> deque = new ArrayDeque<Integer>();
+    for (Integer e : elements) {
+      deque.addLast(e);
+    }
+    return deque;
+  }
+
+  @Benchmark
+  public ImmutableList<Integer> builderImmutableList() {
+    ImmutableList.Builder<Integer> builder = ImmutableList.builder();
+    for (Integer e : elements) {
+      builder.add(e);
+    }
+    return builder.build();
+  }
+
+  @Benchmark
+  public Integer getFingerSeq() {
+    return fingerSeq.get(nextIndex());
+  }
+
+  @Benchmark
+  public Integer getArrayList() {
+    return arrayList.get(nextIndex());
+  }
+
+  @Benchmark
+  public Integer getImmutableList() {
+    return immutableList.get(nextIndex());
+  }
+
+  @Benchmark
+  public void iterateFingerSeq(Blackhole blackhole) {
+    for (Integer e : fingerSeq) {
+      blackhole.consume(e);
+    }
+  }
+
+  @Benchmark
+  public void iterateArrayList(Blackhole blackhole) {
+    for (Integer e : arrayList) {
+      blackhole.consume(e);
+    }
+  }
+
+  @Benchmark
+  public void iterateArrayDeque(Blackhole blackhole) {
+    for (Integer e : arrayDeque) {
+      blackhole.consume(e);
+    }
+  }
+
+  @Benchmark
+  public void iterateImmutableList(Blackhole blackhole) {
+    for (Integer e : immutableList) {
+      blackhole.consume(e);
+    }
+  }
+
+  @Benchmark
+  public FingerSeq<Integer> prependFingerSeq() {
+    return fingerSeq.prepend(-1);
+  }
+
+  @Benchmark
+  public ArrayDeque<Integer> prependArrayDequeCopy() {
+    ArrayDeque<Integer> copy = new ArrayDeque<Integer>(arrayDeque);
+    copy.addFirst(-1);
+    return copy;
+  }
+
+  @Benchmark
+  public FingerSeq<Integer> updateFingerSeq() {
+    return fingerSeq.update(nextIndex(), -1);
+  }
+
+  @Benchmark
+  public ArrayList<Integer> updateArrayListCopy() {
+    ArrayList<Integer> copy = new ArrayList<Integer>(arrayList);
+    copy.set(nextIndex(), -1);
+    return copy;
+  }
+}
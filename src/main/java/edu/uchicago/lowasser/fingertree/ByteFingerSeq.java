@@ -0,0 +1,243 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Iterator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An immutable, persistent sequence of bytes whose leaves are read-only slices of the
+ * {@link ByteBuffer}s it was built from, which may be on the heap, direct, or mapped from a file by
+ * {@link #map}. Concatenation and slicing take logarithmic time and never copy bytes: slicing only
+ * narrows the views at the two ends, and {@link #writeTo} hands all the slices to a single
+ * gathering write.
+ *
+ * <p>Sizes and indices are {@code long}s, so a sequence may hold more than
+ * {@link Integer#MAX_VALUE} bytes, such as a whole large file.
+ *
+ * <p>Because the bytes are shared, a sequence is only as immutable as the buffers it views; callers
+ * must not write to those buffers afterwards.
+ */
+public final class ByteFingerSeq implements Iterable<Byte> {
+  private static final ByteFingerSeq EMPTY =
+      new ByteFingerSeq(FingerTree.<Byte, ByteSlice> empty(ByteSlice.BYTES));
+
+  public static ByteFingerSeq empty() {
+    return EMPTY;
+  }
+
+  /**
+   * Returns a sequence of the remaining bytes of each of {@code buffers}, in order, without copying
+   * them. The positions and limits of the buffers are not changed.
+   */
+  public static ByteFingerSeq of(ByteBuffer... buffers) {
+    ByteSlice[] slices = new ByteSlice[buffers.length];
+    int n = 0;
+    for (ByteBuffer buffer : buffers) {
+      if (checkNotNull(buffer).hasRemaining()) {
+        slices[n++] = ByteSlice.wrap(buffer);
+      }
+    }
+    return wrap(FingerTree.fromArray(ByteSlice.BYTES, slices, 0, n));
+  }
+
+  /**
+   * The most bytes {@link #map} maps as one leaf. Mapping in segments keeps each mapping well
+   * below the two-gigabyte limit of a {@link MappedByteBuffer} and lets the pages of unrelated
+   * segments be reclaimed independently.
+   */
+  static final int MAP_SEGMENT_SIZE = 1 << 26;
+
+  /**
+   * Maps the whole of the file open on {@code channel} read-only and returns a sequence of its
+   * bytes; see {@link #map(FileChannel, long, long)}.
+   */
+  public static ByteFingerSeq map(FileChannel channel) throws IOException {
+    return map(channel, 0, channel.size());
+  }
+
+  /**
+   * Maps {@code size} bytes of the file open on {@code channel}, starting at {@code position},
+   * read-only and returns a sequence of them. The file is mapped in segments of up to
+   * {@value #MAP_SEGMENT_SIZE} bytes, each of which becomes a leaf, so opening even a large file
+   * takes time proportional to the number of segments and reads nothing; pages are read on demand
+   * as they are accessed. The sequence stays valid after {@code channel} is closed, but the file
+   * must not be modified or truncated while it is in use.
+   */
+  public static ByteFingerSeq map(FileChannel channel, long position, long size)
+      throws IOException {
+    return map(channel, position, size, MAP_SEGMENT_SIZE);
+  }
+
+  static ByteFingerSeq map(FileChannel channel, long position, long size, int segmentSize)
+      throws IOException {
+    checkNotNull(channel);
+    checkArgument(position >= 0 && size >= 0, "negative position or size");
+    ByteSlice[] slices = new ByteSlice[(int) ((size + segmentSize - 1) / segmentSize)];
+    for (int i = 0; i < slices.length; i++) {
+      long offset = (long) i * segmentSize;
+      long length = Math.min(segmentSize, size - offset);
+      slices[i] = ByteSlice.wrap(channel.map(MapMode.READ_ONLY, position + offset, length));
+    }
+    return wrap(FingerTree.fromArray(ByteSlice.BYTES, slices, 0, slices.length));
+  }
+
+  public static ByteFingerSeq copyOf(byte[] bytes) {
+    return of(ByteBuffer.wrap(bytes.clone()));
+  }
+
+  private static ByteFingerSeq wrap(FingerTree<Byte, ByteSlice> tree) {
+    return tree.isEmpty() ? EMPTY : new ByteFingerSeq(tree);
+  }
+
+  private final FingerTree<Byte, ByteSlice> tree;
+
+  private ByteFingerSeq(FingerTree<Byte, ByteSlice> tree) {
+    this.tree = tree;
+  }
+
+  public ByteFingerSeq concat(ByteFingerSeq other) {
+    checkNotNull(other);
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    return new ByteFingerSeq(tree.concat(other.tree));
+  }
+
+  public ByteFingerSeq append(ByteBuffer buffer) {
+    return buffer.hasRemaining() ? new ByteFingerSeq(tree.snoc(ByteSlice.wrap(buffer))) : this;
+  }
+
+  public ByteFingerSeq prepend(ByteBuffer buffer) {
+    return buffer.hasRemaining() ? new ByteFingerSeq(tree.cons(ByteSlice.wrap(buffer))) : this;
+  }
+
+  /**
+   * Returns the bytes in {@code [from, to)}, sharing memory with this sequence.
+   */
+  public ByteFingerSeq slice(long from, long to) {
+    if (from < 0 || to < from || to > size()) {
+      throw new IndexOutOfBoundsException(
+          "slice [" + from + ", " + to + ") of a sequence of size " + size());
+    }
+    return wrap(take(drop(tree, from), to - from));
+  }
+
+  /**
+   * Splits {@code tree} before byte {@code n}, which must be less than its size.
+   */
+  private static Split<ByteSlice, FingerTree<Byte, ByteSlice>> splitAt(
+      FingerTree<Byte, ByteSlice> tree,
+      final long n) {
+    return tree.split(ByteSlice.BYTES, acc -> acc > n).get();
+  }
+
+  private static FingerTree<Byte, ByteSlice> take(FingerTree<Byte, ByteSlice> tree, long n) {
+    if (n == tree.measure(ByteSlice.BYTES)) {
+      return tree;
+    }
+    Split<ByteSlice, FingerTree<Byte, ByteSlice>> split = splitAt(tree, n);
+    int offset = (int) (n - split.getLeft().measure(ByteSlice.BYTES));
+    if (offset == 0) {
+      return split.getLeft();
+    }
+    return split.getLeft().snoc(split.getPivot().slice(0, offset));
+  }
+
+  private static FingerTree<Byte, ByteSlice> drop(FingerTree<Byte, ByteSlice> tree, long n) {
+    if (n == tree.measure(ByteSlice.BYTES)) {
+      return FingerTree.empty(ByteSlice.BYTES);
+    }
+    Split<ByteSlice, FingerTree<Byte, ByteSlice>> split = splitAt(tree, n);
+    ByteSlice pivot = split.getPivot();
+    int offset = (int) (n - split.getLeft().measure(ByteSlice.BYTES));
+    return split.getRight().cons(pivot.slice(offset, pivot.length()));
+  }
+
+  public byte getByte(long index) {
+    if (index < 0 || index >= size()) {
+      throw new IndexOutOfBoundsException("index " + index + " of a sequence of size " + size());
+    }
+    return (byte) FingerTree.bitsAt(tree, ByteSlice.BYTES, index);
+  }
+
+  public long size() {
+    return tree.measure(ByteSlice.BYTES);
+  }
+
+  public boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  /**
+   * Returns fresh read-only views of the slices making up this sequence, in order. Consuming them
+   * does not affect this sequence.
+   */
+  public ByteBuffer[] toBuffers() {
+    List<ByteBuffer> buffers = Lists.newArrayList();
+    for (Iterator<ByteSlice> leaves = tree.leafIterator(); leaves.hasNext();) {
+      buffers.add(leaves.next().buffer());
+    }
+    return buffers.toArray(new ByteBuffer[buffers.size()]);
+  }
+
+  /**
+   * Copies this sequence into a new array.
+   *
+   * @throws IllegalStateException if this sequence has more than {@link Integer#MAX_VALUE} bytes
+   */
+  public byte[] toArray() {
+    long size = size();
+    checkState(size <= Integer.MAX_VALUE, "too many bytes for an array: %s", size);
+    byte[] result = new byte[(int) size];
+    int offset = 0;
+    for (ByteBuffer buffer : toBuffers()) {
+      int length = buffer.remaining();
+      buffer.get(result, offset, length);
+      offset += length;
+    }
+    return result;
+  }
+
+  /**
+   * Writes the whole sequence to {@code channel} with gathering writes over the slices, without
+   * copying them into an intermediate buffer, and returns the number of bytes written. Blocks until
+   * every byte has been written, so {@code channel} must be in blocking mode.
+   */
+  public long writeTo(GatheringByteChannel channel) throws IOException {
+    checkNotNull(channel);
+    ByteBuffer[] buffers = toBuffers();
+    long size = size();
+    long remaining = size;
+    int first = 0;
+    while (remaining > 0) {
+      remaining -= channel.write(buffers, first, buffers.length - first);
+      while (first < buffers.length && !buffers[first].hasRemaining()) {
+        first++;
+      }
+    }
+    return size;
+  }
+
+  @Override
+  public Iterator<Byte> iterator() {
+    return tree.iterator();
+  }
+
+  @Override
+  public String toString() {
+    return "ByteFingerSeq[size=" + size() + "]";
+  }
+}
@@ -0,0 +1,119 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A leaf viewing a read-only, non-empty {@link ByteBuffer} slice, which may be a heap, direct or
+ * memory-mapped buffer. Slicing a leaf shares the underlying memory rather than copying it.
+ */
+final class ByteSlice implements Container<Byte>, PrimitiveLeaf {
+  /**
+   * Counts bytes as a {@code long}, so that it does not overflow as {@link Measured#SIZE} does on
+   * trees of more than {@link Integer#MAX_VALUE} bytes.
+   */
+  static final Measured<Byte, Long> BYTES = new Measured<Byte, Long>() {
+    @Override
+    public Long identity() {
+      return 0L;
+    }
+
+    @Override
+    public Long combine(Long left, Long right) {
+      return left + right;
+    }
+
+    @Override
+    public Long measure(Byte element) {
+      return 1L;
+    }
+  };
+
+  /**
+   * Wraps the remaining bytes of {@code buffer}, which must not be empty, without copying them.
+   * Later changes to the buffer's position and limit do not affect the slice, but writes to its
+   * contents through other views will show through.
+   */
+  static ByteSlice wrap(ByteBuffer buffer) {
+    checkArgument(buffer.hasRemaining());
+    return new ByteSlice(buffer.asReadOnlyBuffer().slice());
+  }
+
+  /**
+   * A read-only buffer whose position is zero and whose limit is the length of the slice.
+   */
+  private final ByteBuffer buffer;
+
+  private ByteSlice(ByteBuffer buffer) {
+    this.buffer = buffer;
+  }
+
+  @Override
+  public long bitsAt(int i) {
+    return buffer.get(i);
+  }
+
+  @Override
+  public Byte index(int i) {
+    return buffer.get(i);
+  }
+
+  @Override
+  public int length() {
+    return buffer.limit();
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <V> V measure(Measured<Byte, V> measured) {
+    if ((Object) measured == Measured.SIZE) {
+      return Measured.uncache(measured, null, buffer.limit());
+    } else if (measured == BYTES) {
+      return (V) Long.valueOf(buffer.limit());
+    }
+    V v = measured.measure(buffer.get(0));
+    for (int i = 1; i < buffer.limit(); i++) {
+      v = measured.combine(v, measured.measure(buffer.get(i)));
+    }
+    return v;
+  }
+
+  /**
+   * Returns a slice of the bytes in {@code [from, to)}, which must not be empty, sharing this
+   * slice's memory.
+   */
+  public ByteSlice slice(int from, int to) {
+    if (from == 0 && to == buffer.limit()) {
+      return this;
+    }
+    ByteBuffer view = buffer.duplicate();
+    // Go through Buffer so that the calls link against Java 8's class library.
+    ((Buffer) view).limit(to);
+    ((Buffer) view).position(from);
+    return new ByteSlice(view.slice());
+  }
+
+  /**
+   * Returns a fresh read-only view of this slice, positioned at zero, for the caller to consume.
+   */
+  public ByteBuffer buffer() {
+    return buffer.duplicate();
+  }
+
+  @Override
+  public Iterator<Byte> iterator() {
+    return new AbstractIterator<Byte>() {
+      private int i;
+
+      @Override
+      protected Byte computeNext() {
+        return (i < buffer.limit()) ? buffer.get(i++) : endOfData();
+      }
+    };
+  }
+}
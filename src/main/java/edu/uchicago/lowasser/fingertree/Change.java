@@ -0,0 +1,59 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * One difference between two versions of a sequence: the elements in
+ * {@code [getOldStart(), getOldEnd())} of the old version were replaced by those in
+ * {@code [getNewStart(), getNewEnd())} of the new one. Either range may be empty.
+ */
+public final class Change {
+  private final int oldStart;
+  private final int oldEnd;
+  private final int newStart;
+  private final int newEnd;
+
+  Change(int oldStart, int oldEnd, int newStart, int newEnd) {
+    checkArgument(oldStart <= oldEnd && newStart <= newEnd);
+    this.oldStart = oldStart;
+    this.oldEnd = oldEnd;
+    this.newStart = newStart;
+    this.newEnd = newEnd;
+  }
+
+  public int getOldStart() {
+    return oldStart;
+  }
+
+  public int getOldEnd() {
+    return oldEnd;
+  }
+
+  public int getNewStart() {
+    return newStart;
+  }
+
+  public int getNewEnd() {
+    return newEnd;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (obj instanceof Change) {
+      Change other = (Change) obj;
+      return oldStart == other.oldStart && oldEnd == other.oldEnd && newStart == other.newStart
+          && newEnd == other.newEnd;
+    }
+    return false;
+  }
+
+  @Override
+  public int hashCode() {
+    return ((oldStart * 31 + oldEnd) * 31 + newStart) * 31 + newEnd;
+  }
+
+  @Override
+  public String toString() {
+    return "[" + oldStart + ", " + oldEnd + ") -> [" + newStart + ", " + newEnd + ")";
+  }
+}
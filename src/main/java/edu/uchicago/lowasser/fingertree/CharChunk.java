@@ -0,0 +1,146 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.primitives.Chars;
+
+/**
+ * A leaf holding up to {@link #CAPACITY} chars of text, along with the number of line feeds among
+ * them, so that a {@link FingerRope} measured by {@link #LINES} never rescans a chunk.
+ */
+final class CharChunk implements Container<Character>, PrimitiveLeaf {
+  static final int CAPACITY = 256;
+
+  /**
+   * Counts line feeds.
+   */
+  static final Measured<Character, Integer> LINES = new Measured<Character, Integer>() {
+    @Override
+    public Integer identity() {
+      return 0;
+    }
+
+    @Override
+    public Integer combine(Integer left, Integer right) {
+      return left + right;
+    }
+
+    @Override
+    public Integer measure(Character element) {
+      return (element == '\n') ? 1 : 0;
+    }
+  };
+
+  /**
+   * Wraps {@code chars}, which must be non-empty and never be modified afterwards.
+   */
+  static CharChunk wrap(char[] chars) {
+    checkArgument(chars.length >= 1 && chars.length <= CAPACITY);
+    return new CharChunk(chars);
+  }
+
+  private final char[] chars;
+  private final int lines;
+
+  private CharChunk(char[] chars) {
+    this.chars = chars;
+    int count = 0;
+    for (char c : chars) {
+      if (c == '\n') {
+        count++;
+      }
+    }
+    this.lines = count;
+  }
+
+  @Override
+  public long bitsAt(int i) {
+    return chars[i];
+  }
+
+  /**
+   * Returns the number of line feeds in this chunk.
+   */
+  public int lines() {
+    return lines;
+  }
+
+  /**
+   * Returns the number of line feeds before {@code end}.
+   */
+  public int linesBefore(int end) {
+    int count = 0;
+    for (int i = 0; i < end; i++) {
+      if (chars[i] == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the offset of the {@code n}th line feed in this chunk, counting from one.
+   */
+  public int lineFeed(int n) {
+    for (int i = 0; i < chars.length; i++) {
+      if (chars[i] == '\n' && --n == 0) {
+        return i;
+      }
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  @Override
+  public Character index(int i) {
+    return chars[i];
+  }
+
+  @Override
+  public int length() {
+    return chars.length;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <V> V measure(Measured<Character, V> measured) {
+    if ((Object) measured == Measured.SIZE) {
+      return Measured.uncache(measured, null, chars.length);
+    } else if (measured == LINES) {
+      return (V) Integer.valueOf(lines);
+    }
+    V v = measured.measure(chars[0]);
+    for (int i = 1; i < chars.length; i++) {
+      v = measured.combine(v, measured.measure(chars[i]));
+    }
+    return v;
+  }
+
+  public CharChunk slice(int from, int to) {
+    if (from == 0 && to == chars.length) {
+      return this;
+    }
+    return new CharChunk(Arrays.copyOfRange(chars, from, to));
+  }
+
+  /**
+   * Returns a chunk holding the chars of this chunk followed by those of {@code other}, whose
+   * lengths must sum to at most {@link #CAPACITY}.
+   */
+  public CharChunk concat(CharChunk other) {
+    char[] newChars = Arrays.copyOf(chars, chars.length + other.chars.length);
+    System.arraycopy(other.chars, 0, newChars, chars.length, other.chars.length);
+    return new CharChunk(newChars);
+  }
+
+  void appendTo(StringBuilder builder) {
+    builder.append(chars);
+  }
+
+  @Override
+  public Iterator<Character> iterator() {
+    return Chars.asList(chars).iterator();
+  }
+}
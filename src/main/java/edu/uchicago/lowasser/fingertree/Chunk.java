@@ -0,0 +1,133 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * A leaf holding up to {@link #CAPACITY} elements in a single array, so that a sequence pays for
+ * one tree slot per chunk instead of one {@link Elem} and one slot per element. Chunks are
+ * immutable; every modification copies the array, which is short enough that this is cheaper than
+ * touching the tree.
+ */
+final class Chunk<E> implements Container<E> {
+  static final int CAPACITY = 32;
+
+  public static <E> Chunk<E> of(E e) {
+    return new Chunk<E>(new Object[] { checkNotNull(e) });
+  }
+
+  /**
+   * Wraps {@code elements}, which must be non-empty, hold no nulls, and never be modified
+   * afterwards.
+   */
+  static <E> Chunk<E> wrap(Object[] elements) {
+    checkArgument(elements.length >= 1 && elements.length <= CAPACITY);
+    return new Chunk<E>(elements);
+  }
+
+  private final Object[] elements;
+
+  private Chunk(Object[] elements) {
+    this.elements = elements;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public E index(int i) {
+    return (E) elements[i];
+  }
+
+  @Override
+  public int length() {
+    return elements.length;
+  }
+
+  @Override
+  public <V> V measure(Measured<E, V> measured) {
+    if (measured == Measured.SIZE) {
+      return Measured.uncache(measured, null, elements.length);
+    }
+    V v = measured.measure(index(0));
+    for (int i = 1; i < elements.length; i++) {
+      v = measured.combine(v, measured.measure(index(i)));
+    }
+    return v;
+  }
+
+  public boolean isFull() {
+    return elements.length == CAPACITY;
+  }
+
+  public Chunk<E> cons(E e) {
+    Object[] newElements = new Object[elements.length + 1];
+    newElements[0] = checkNotNull(e);
+    System.arraycopy(elements, 0, newElements, 1, elements.length);
+    return new Chunk<E>(newElements);
+  }
+
+  public Chunk<E> snoc(E e) {
+    Object[] newElements = Arrays.copyOf(elements, elements.length + 1);
+    newElements[elements.length] = checkNotNull(e);
+    return new Chunk<E>(newElements);
+  }
+
+  /**
+   * Returns the elements of this chunk with {@code e} inserted at {@code i}, as one chunk, or as
+   * two half-full chunks if this one is already full.
+   */
+  @SuppressWarnings("unchecked")
+  public Chunk<E>[] insert(int i, E e) {
+    Object[] newElements = new Object[elements.length + 1];
+    System.arraycopy(elements, 0, newElements, 0, i);
+    newElements[i] = checkNotNull(e);
+    System.arraycopy(elements, i, newElements, i + 1, elements.length - i);
+    if (newElements.length <= CAPACITY) {
+      return new Chunk[] { new Chunk<E>(newElements) };
+    }
+    int half = newElements.length >> 1;
+    return new Chunk[] {
+        new Chunk<E>(Arrays.copyOfRange(newElements, 0, half)),
+        new Chunk<E>(Arrays.copyOfRange(newElements, half, newElements.length)) };
+  }
+
+  public Chunk<E> set(int i, E e) {
+    Object[] newElements = elements.clone();
+    newElements[i] = checkNotNull(e);
+    return new Chunk<E>(newElements);
+  }
+
+  public Chunk<E> remove(int i) {
+    Object[] newElements = new Object[elements.length - 1];
+    System.arraycopy(elements, 0, newElements, 0, i);
+    System.arraycopy(elements, i + 1, newElements, i, elements.length - i - 1);
+    return new Chunk<E>(newElements);
+  }
+
+  public Chunk<E> slice(int from, int to) {
+    if (from == 0 && to == elements.length) {
+      return this;
+    }
+    return new Chunk<E>(Arrays.copyOfRange(elements, from, to));
+  }
+
+  /**
+   * Returns a chunk holding the elements of this chunk followed by those of {@code other}, whose
+   * lengths must sum to at most {@link #CAPACITY}.
+   */
+  public Chunk<E> concat(Chunk<E> other) {
+    Object[] newElements = Arrays.copyOf(elements, elements.length + other.elements.length);
+    System.arraycopy(other.elements, 0, newElements, elements.length, other.elements.length);
+    return new Chunk<E>(newElements);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public Iterator<E> iterator() {
+    return (Iterator<E>) Iterators.forArray(elements);
+  }
+}
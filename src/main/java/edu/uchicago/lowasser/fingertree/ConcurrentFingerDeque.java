@@ -0,0 +1,196 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A thread-safe, lock-free deque that holds its contents as a {@link FingerSeq} and updates them
+ * by compare-and-swap of the whole sequence. Because the sequence is persistent, {@link #snapshot}
+ * returns a consistent, point-in-time view in constant time and without blocking writers, and
+ * iteration is over such a snapshot. Null elements are not permitted.
+ *
+ * <p>Every update computes a new version from the current one and tries to install it; a thread
+ * that loses the race retries, at first immediately and then after randomized, exponentially
+ * growing pauses, so that heavy contention does not degrade into every thread recomputing against
+ * a root that keeps moving. Writers with many elements to add should use {@link #offerAllFirst}
+ * or {@link #offerAllLast}, which install them all with a single swap.
+ */
+public final class ConcurrentFingerDeque<E> extends AbstractQueue<E> {
+  /**
+   * The number of failed swaps after which a thread starts pausing before it retries.
+   */
+  private static final int SPIN_ATTEMPTS = 4;
+  private static final long MIN_PAUSE_NANOS = 1 << 8;
+  private static final int MAX_PAUSE_SHIFT = 12;
+
+  private final AtomicReference<FingerSeq<E>> root;
+
+  public ConcurrentFingerDeque() {
+    this.root = new AtomicReference<FingerSeq<E>>(FingerSeq.<E> empty());
+  }
+
+  public ConcurrentFingerDeque(Iterable<? extends E> elements) {
+    this.root = new AtomicReference<FingerSeq<E>>(FingerSeq.<E> copyOf(elements));
+  }
+
+  private static void backOff(int attempt) {
+    if (attempt >= SPIN_ATTEMPTS) {
+      long bound = MIN_PAUSE_NANOS << Math.min(attempt - SPIN_ATTEMPTS, MAX_PAUSE_SHIFT);
+      LockSupport.parkNanos(ThreadLocalRandom.current().nextLong(bound) + 1);
+    }
+  }
+
+  /**
+   * Returns the contents of this deque at some instant, in constant time. Later updates to this
+   * deque do not affect the returned sequence.
+   */
+  public FingerSeq<E> snapshot() {
+    return root.get();
+  }
+
+  public boolean offerFirst(E e) {
+    checkNotNull(e);
+    for (int attempt = 0;; attempt++) {
+      FingerSeq<E> current = root.get();
+      if (root.compareAndSet(current, current.prepend(e))) {
+        return true;
+      }
+      backOff(attempt);
+    }
+  }
+
+  public boolean offerLast(E e) {
+    checkNotNull(e);
+    for (int attempt = 0;; attempt++) {
+      FingerSeq<E> current = root.get();
+      if (root.compareAndSet(current, current.append(e))) {
+        return true;
+      }
+      backOff(attempt);
+    }
+  }
+
+  /**
+   * Adds all of {@code elements} to the front of this deque, in order, atomically: other threads
+   * see either none of them or all of them.
+   */
+  public void offerAllFirst(Iterable<? extends E> elements) {
+    FingerSeq<E> batch = FingerSeq.copyOf(elements);
+    for (int attempt = 0;; attempt++) {
+      FingerSeq<E> current = root.get();
+      if (root.compareAndSet(current, batch.concat(current))) {
+        return;
+      }
+      backOff(attempt);
+    }
+  }
+
+  /**
+   * Adds all of {@code elements} to the back of this deque, in order, atomically: other threads
+   * see either none of them or all of them.
+   */
+  public void offerAllLast(Iterable<? extends E> elements) {
+    FingerSeq<E> batch = FingerSeq.copyOf(elements);
+    for (int attempt = 0;; attempt++) {
+      FingerSeq<E> current = root.get();
+      if (root.compareAndSet(current, current.concat(batch))) {
+        return;
+      }
+      backOff(attempt);
+    }
+  }
+
+  public E pollFirst() {
+    for (int attempt = 0;; attempt++) {
+      FingerSeq<E> current = root.get();
+      if (current.isEmpty()) {
+        return null;
+      } else if (root.compareAndSet(current, current.withoutFirst())) {
+        return current.first();
+      }
+      backOff(attempt);
+    }
+  }
+
+  public E pollLast() {
+    for (int attempt = 0;; attempt++) {
+      FingerSeq<E> current = root.get();
+      if (current.isEmpty()) {
+        return null;
+      } else if (root.compareAndSet(current, current.withoutLast())) {
+        return current.last();
+      }
+      backOff(attempt);
+    }
+  }
+
+  /**
+   * Removes and returns every element of this deque atomically, leaving it empty.
+   */
+  public FingerSeq<E> drain() {
+    return root.getAndSet(FingerSeq.<E> empty());
+  }
+
+  public E peekFirst() {
+    FingerSeq<E> current = root.get();
+    return current.isEmpty() ? null : current.first();
+  }
+
+  public E peekLast() {
+    FingerSeq<E> current = root.get();
+    return current.isEmpty() ? null : current.last();
+  }
+
+  @Override
+  public boolean offer(E e) {
+    return offerLast(e);
+  }
+
+  @Override
+  public E poll() {
+    return pollFirst();
+  }
+
+  @Override
+  public E peek() {
+    return peekFirst();
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    checkArgument(c != this, "cannot add a deque to itself");
+    offerAllLast(c);
+    return !c.isEmpty();
+  }
+
+  @Override
+  public void clear() {
+    root.set(FingerSeq.<E> empty());
+  }
+
+  @Override
+  public int size() {
+    return root.get().size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return root.get().isEmpty();
+  }
+
+  /**
+   * Returns an iterator over a snapshot of this deque; it never throws
+   * {@link java.util.ConcurrentModificationException} and does not support removal.
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return root.get().iterator();
+  }
+}
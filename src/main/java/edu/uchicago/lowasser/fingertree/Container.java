@@ -4,4 +4,6 @@ interface Container<E> extends Iterable<E> {
   E index(int i);
 
   int length();
+
+  <V> V measure(Measured<E, V> measured);
 }
@@ -0,0 +1,54 @@
+package edu.uchicago.lowasser.fingertree;
+
+/**
+ * The polynomial hash of a run of elements, {@code e[0] * 31^(n-1) + ... + e[n-1]}, which is
+ * {@link java.util.List#hashCode} without its leading {@code 31^n} term. Unlike the list hash it
+ * depends only on the elements and not on how the tree groups them, and the hash of a
+ * concatenation follows from the hashes and lengths of its parts, so nodes and deep trees can cache
+ * theirs and a new version rehashes only the path it copied.
+ */
+final class ContentHash {
+  private ContentHash() {}
+
+  /**
+   * Returns {@code 31^n}, wrapping around as int arithmetic does.
+   */
+  static int pow31(int n) {
+    int result = 1;
+    int base = 31;
+    for (; n > 0; n >>>= 1) {
+      if ((n & 1) != 0) {
+        result *= base;
+      }
+      base *= base;
+    }
+    return result;
+  }
+
+  static int of(Container<?> container) {
+    if (container instanceof Node) {
+      return ((Node<?, ?>) container).contentHash();
+    } else if (container instanceof FingerTree) {
+      return ((FingerTree<?, ?>) container).contentHash();
+    } else if (container instanceof DeepContainer) {
+      return ofParts(container);
+    }
+    int hash = 0;
+    for (int i = 0; i < container.length(); i++) {
+      hash = 31 * hash + container.index(i).hashCode();
+    }
+    return hash;
+  }
+
+  /**
+   * Computes the hash of a tree, digit or node from the hashes of its parts.
+   */
+  static <E> int ofParts(Container<E> container) {
+    int hash = 0;
+    for (int i = 0; i < LeafIterator.partCount(container); i++) {
+      Container<E> part = LeafIterator.part(container, i);
+      hash = hash * pow31(part.length()) + of(part);
+    }
+    return hash;
+  }
+}
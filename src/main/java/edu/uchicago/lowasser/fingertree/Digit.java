@@ -7,64 +7,84 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.function.Predicate;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.Iterables;
 
 final class Digit<E, T extends Container<E>> implements DeepContainer<E, T> {
-  public static <E, T extends Container<E>> Digit<E, T> of(T a) {
-    return new Digit<E, T>(a);
+  public static <E, T extends Container<E>> Digit<E, T> of(Measured<E, ?> measured, T a) {
+    return new Digit<E, T>(measured, a);
   }
 
-  public static <E, T extends Container<E>> Digit<E, T> of(T a, T b) {
-    return new Digit<E, T>(a, b);
+  public static <E, T extends Container<E>> Digit<E, T> of(Measured<E, ?> measured, T a, T b) {
+    return new Digit<E, T>(measured, a, b);
   }
 
-  public static <E, T extends Container<E>> Digit<E, T> of(T a, T b, T c) {
-    return new Digit<E, T>(a, b, c);
+  public static <E, T extends Container<E>> Digit<E, T> of(
+      Measured<E, ?> measured,
+      T a,
+      T b,
+      T c) {
+    return new Digit<E, T>(measured, a, b, c);
   }
 
-  public static <E, T extends Container<E>> Digit<E, T> of(T a, T b, T c, T d) {
-    return new Digit<E, T>(a, b, c, d);
+  public static <E, T extends Container<E>> Digit<E, T> of(
+      Measured<E, ?> measured,
+      T a,
+      T b,
+      T c,
+      T d) {
+    return new Digit<E, T>(measured, a, b, c, d);
   }
 
   final T[] contents;
+  private final Object measure;
 
   public final List<T> asList() {
     return Collections.unmodifiableList(Arrays.asList(contents));
   }
 
   @SuppressWarnings("unchecked")
-  private Digit(T a) {
-    this((T[]) new Container[] { a });
+  private Digit(Measured<E, ?> measured, T a) {
+    this(measured, (T[]) new Container[] { a });
   }
 
   @SuppressWarnings("unchecked")
-  private Digit(T a, T b) {
-    this((T[]) new Container[] { a, b });
+  private Digit(Measured<E, ?> measured, T a, T b) {
+    this(measured, (T[]) new Container[] { a, b });
   }
 
   @SuppressWarnings("unchecked")
-  private Digit(T a, T b, T c) {
-    this((T[]) new Container[] { a, b, c });
+  private Digit(Measured<E, ?> measured, T a, T b, T c) {
+    this(measured, (T[]) new Container[] { a, b, c });
   }
 
   @SuppressWarnings("unchecked")
-  private Digit(T a, T b, T c, T d) {
-    this((T[]) new Container[] { a, b, c, d });
+  private Digit(Measured<E, ?> measured, T a, T b, T c, T d) {
+    this(measured, (T[]) new Container[] { a, b, c, d });
   }
 
-  Digit(T[] contents) {
+  Digit(Measured<E, ?> measured, T[] contents) {
     checkArgument(contents.length >= 1 && contents.length <= 4);
     for (T t : contents) {
       checkNotNull(t);
     }
     this.contents = contents;
+    this.measure = measured.cache(contents);
   }
 
   @SuppressWarnings("unchecked")
-  Digit(List<T> list) {
-    this(list.toArray((T[]) new Container[0]));
+  Digit(Measured<E, ?> measured, List<T> list) {
+    this(measured, list.toArray((T[]) new Container[0]));
+  }
+
+  /**
+   * Reuses the annotation already cached for {@code contents}, as when a {@link Node} becomes a
+   * digit.
+   */
+  Digit(T[] contents, Object measure) {
+    this.contents = contents;
+    this.measure = measure;
   }
 
   @Override
@@ -89,6 +109,11 @@ final class Digit<E, T extends Container<E>> implements DeepContainer<E, T> {
     return len;
   }
 
+  @Override
+  public <V> V measure(Measured<E, V> measured) {
+    return Measured.uncache(measured, measure, length());
+  }
+
   @Override
   public T get(int i) {
     return contents[i];
@@ -107,112 +132,163 @@ final class Digit<E, T extends Container<E>> implements DeepContainer<E, T> {
     return contents[contents.length - 1];
   }
 
-  public View<T, Optional<Digit<E, T>>> viewL() {
-    return View.of(contents[0], tail());
+  public Digit<E, T> replace(Measured<E, ?> measured, int i, T t) {
+    T[] newContents = contents.clone();
+    newContents[i] = checkNotNull(t);
+    return new Digit<E, T>(measured, newContents);
+  }
+
+  /**
+   * Returns this digit with the item holding element {@code i} replaced as by
+   * {@link FingerTree#adjust}.
+   */
+  Digit<E, T> adjust(Measured<E, ?> measured, int i, FingerTree.Adjuster<T> adjuster) {
+    for (int j = 0; j < contents.length; j++) {
+      int len = contents[j].length();
+      if (i < len) {
+        return replace(measured, j, adjuster.adjust(contents[j], i));
+      }
+      i -= len;
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  public View<T, Optional<Digit<E, T>>> viewL(Measured<E, ?> measured) {
+    return View.of(contents[0], tail(measured));
   }
 
-  public View<T, Optional<Digit<E, T>>> viewR() {
+  public View<T, Optional<Digit<E, T>>> viewR(Measured<E, ?> measured) {
     switch (contents.length) {
       case 1:
         return View.of(contents[0], Optional.<Digit<E, T>> absent());
       default:
-        int last = contents.length - 1;
-        T[] newContents = Arrays.copyOfRange(contents, 0, last);
-        return View.of(contents[last], Optional.of(new Digit<E, T>(newContents)));
+        return View.of(last(), Optional.of(dropLast(measured)));
     }
   }
 
-  public Optional<Digit<E, T>> tail() {
-    switch (contents.length) {
-      case 1:
-        return Optional.absent();
-      default:
-        T[] newContents = Arrays.copyOfRange(contents, 1, contents.length);
-        return Optional.of(new Digit<E, T>(newContents));
+  public Optional<Digit<E, T>> tail(Measured<E, ?> measured) {
+    if (contents.length == 1) {
+      return Optional.absent();
     }
+    return Optional.of(dropFirst(measured));
   }
 
-  public Optional<Digit<E, T>> init() {
-    switch (contents.length) {
-      case 1:
-        return Optional.absent();
-      default:
-        int last = contents.length - 1;
-        T[] newContents = Arrays.copyOfRange(contents, 0, last);
-        return Optional.of(new Digit<E, T>(newContents));
+  public Optional<Digit<E, T>> init(Measured<E, ?> measured) {
+    if (contents.length == 1) {
+      return Optional.absent();
     }
+    return Optional.of(dropLast(measured));
   }
 
-  public FingerTree<E, T> asFingerTree() {
-    return FingerTree.small(contents);
+  /**
+   * Returns this digit without its first item. It must have at least two.
+   */
+  Digit<E, T> dropFirst(Measured<E, ?> measured) {
+    return new Digit<E, T>(measured, Arrays.copyOfRange(contents, 1, contents.length));
   }
 
-  public View<Digit<E, T>, Optional<Node<E, T>>> cons(T t) {
+  /**
+   * Returns this digit without its last item. It must have at least two.
+   */
+  Digit<E, T> dropLast(Measured<E, ?> measured) {
+    return new Digit<E, T>(measured, Arrays.copyOf(contents, contents.length - 1));
+  }
+
+  <V> Split<T, Optional<Digit<E, T>>> split(
+      Measured<E, ?> measured,
+      Measured<E, V> by,
+      Predicate<? super V> p,
+      V acc) {
+    int i = 0;
+    for (; i < contents.length - 1; i++) {
+      acc = by.combine(acc, contents[i].measure(by));
+      if (p.test(acc)) {
+        break;
+      }
+    }
+    return Split.of(
+        slice(measured, 0, i),
+        contents[i],
+        slice(measured, i + 1, contents.length));
+  }
+
+  private Optional<Digit<E, T>> slice(Measured<E, ?> measured, int from, int to) {
+    if (from == to) {
+      return Optional.absent();
+    }
+    return Optional.of(new Digit<E, T>(measured, Arrays.copyOfRange(contents, from, to)));
+  }
+
+  public FingerTree<E, T> asFingerTree(Measured<E, ?> measured) {
+    return FingerTree.small(measured, contents);
+  }
+
+  public View<Digit<E, T>, Optional<Node<E, T>>> cons(Measured<E, ?> measured, T t) {
     checkNotNull(t);
     switch (contents.length) {
       case 4:
-        Node<E, T> node = Node.of(contents[1], contents[2], contents[3]);
-        return View.of(Digit.of(t, contents[0]), Optional.of(node));
+        Node<E, T> node = Node.of(measured, contents[1], contents[2], contents[3]);
+        return View.of(Digit.of(measured, t, contents[0]), Optional.of(node));
       default:
         @SuppressWarnings("unchecked")
         T[] newContents = (T[]) new Container[contents.length + 1];
         System.arraycopy(contents, 0, newContents, 1, contents.length);
         newContents[0] = t;
-        return View.of(new Digit<E, T>(newContents), Optional.<Node<E, T>> absent());
+        return View.of(new Digit<E, T>(measured, newContents), Optional.<Node<E, T>> absent());
     }
   }
 
-  public View<Digit<E, T>, Node<E, T>[]> cons(Digit<E, T> digit) {
+  public View<Digit<E, T>, Node<E, T>[]> cons(Measured<E, ?> measured, Digit<E, T> digit) {
     int p = 0;
     @SuppressWarnings("unchecked")
     T[] tmp = (T[]) new Container[8];
-    System.arraycopy(contents, 0, tmp, p, size());
-    p += size();
     System.arraycopy(digit.contents, 0, tmp, p, digit.size());
     p += digit.size();
+    System.arraycopy(contents, 0, tmp, p, size());
+    p += size();
 
     int nNodes = (p - 2) / 3; // >= 0
     @SuppressWarnings("unchecked")
     Node<E, T>[] nodes = new Node[nNodes];
     for (int i = p - (3 * nNodes), j = 0; j < nNodes; i += 3, j++) {
-      nodes[j] = Node.of(tmp[i], tmp[i + 1], tmp[i + 2]);
+      nodes[j] = Node.of(measured, tmp[i], tmp[i + 1], tmp[i + 2]);
     }
-    return View.of(new Digit<E, T>(Arrays.copyOf(tmp, p - (3 * nNodes))), nodes);
+    return View.of(new Digit<E, T>(measured, Arrays.copyOf(tmp, p - (3 * nNodes))), nodes);
   }
 
-  public View<Digit<E, T>, Node<E, T>[]> snoc(Digit<E, T> digit) {
+  public View<Digit<E, T>, Node<E, T>[]> snoc(Measured<E, ?> measured, Digit<E, T> digit) {
     int p = 0;
     @SuppressWarnings("unchecked")
     T[] tmp = (T[]) new Container[8];
-    System.arraycopy(digit.contents, 0, tmp, p, digit.size());
-    p += digit.size();
     System.arraycopy(contents, 0, tmp, p, size());
     p += size();
+    System.arraycopy(digit.contents, 0, tmp, p, digit.size());
+    p += digit.size();
 
     int nNodes = (p - 2) / 3;
     @SuppressWarnings("unchecked")
     Node<E, T>[] nodes = new Node[nNodes];
     for (int i = 0, j = 0; j < nNodes; i += 3, j++) {
-      nodes[j] = Node.of(tmp[i], tmp[i + 1], tmp[i + 2]);
+      nodes[j] = Node.of(measured, tmp[i], tmp[i + 1], tmp[i + 2]);
     }
-    return View.of(new Digit<E, T>(Arrays.copyOfRange(tmp, 3 * nNodes, p)), nodes);
+    return View.of(new Digit<E, T>(measured, Arrays.copyOfRange(tmp, 3 * nNodes, p)), nodes);
   }
 
-  public View<Digit<E, T>, Optional<Node<E, T>>> snoc(T t) {
+  public View<Digit<E, T>, Optional<Node<E, T>>> snoc(Measured<E, ?> measured, T t) {
     checkNotNull(t);
     switch (contents.length) {
       case 4:
-        Node<E, T> node = Node.of(contents[0], contents[1], contents[2]);
-        return View.of(Digit.of(contents[3], t), Optional.of(node));
+        Node<E, T> node = Node.of(measured, contents[0], contents[1], contents[2]);
+        return View.of(Digit.of(measured, contents[3], t), Optional.of(node));
       default:
         T[] newContents = Arrays.copyOf(contents, contents.length + 1);
         newContents[contents.length] = t;
-        return View.of(new Digit<E, T>(newContents), Optional.<Node<E, T>> absent());
+        return View.of(new Digit<E, T>(measured, newContents), Optional.<Node<E, T>> absent());
     }
   }
 
   @Override
   public Iterator<E> iterator() {
-    return Iterables.concat(contents).iterator();
+    return new TreeIterator<E>(this, false);
   }
 }
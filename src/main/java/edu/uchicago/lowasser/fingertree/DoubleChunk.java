@@ -0,0 +1,49 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A leaf holding up to {@link #CAPACITY} unboxed {@code double} values.
+ */
+final class DoubleChunk extends PrimitiveChunk<Double, double[], DoubleChunk> {
+  public static DoubleChunk of(double value) {
+    return new DoubleChunk(new double[] { value });
+  }
+
+  /**
+   * Wraps {@code values}, which must be non-empty and never be modified afterwards.
+   */
+  static DoubleChunk wrap(double[] values) {
+    checkArgument(values.length >= 1 && values.length <= CAPACITY);
+    return new DoubleChunk(values);
+  }
+
+  private DoubleChunk(double[] values) {
+    super(values);
+  }
+
+  @Override
+  public int length() {
+    return values.length;
+  }
+
+  @Override
+  double[] newArray(int length) {
+    return new double[length];
+  }
+
+  @Override
+  DoubleChunk withValues(double[] values) {
+    return new DoubleChunk(values);
+  }
+
+  @Override
+  public Double index(int i) {
+    return values[i];
+  }
+
+  @Override
+  public long bitsAt(int i) {
+    return Double.doubleToRawLongBits(values[i]);
+  }
+}
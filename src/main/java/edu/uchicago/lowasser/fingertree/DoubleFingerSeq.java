@@ -0,0 +1,83 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable, persistent sequence of {@code double} values; the unboxed counterpart of
+ * {@link FingerSeq}. Values are stored in {@code double[]} chunks at the leaves of the same finger
+ * tree spine, so reads never box and each value costs little more than eight bytes.
+ */
+public final class DoubleFingerSeq
+    extends PrimitiveFingerSeq<Double, double[], DoubleChunk, DoubleFingerSeq> {
+  private static final DoubleFingerSeq EMPTY =
+      new DoubleFingerSeq(FingerTree.<Double, DoubleChunk> empty());
+
+  public static DoubleFingerSeq empty() {
+    return EMPTY;
+  }
+
+  public static DoubleFingerSeq of(double... values) {
+    return copyOf(values);
+  }
+
+  public static DoubleFingerSeq copyOf(double[] values) {
+    return EMPTY.wrap(build(values, values.length, double[]::new, DoubleChunk::wrap));
+  }
+
+  private DoubleFingerSeq(FingerTree<Double, DoubleChunk> tree) {
+    super(tree);
+  }
+
+  @Override
+  DoubleFingerSeq wrap(FingerTree<Double, DoubleChunk> tree) {
+    return tree.isEmpty() ? EMPTY : new DoubleFingerSeq(tree);
+  }
+
+  public DoubleFingerSeq prepend(double value) {
+    return prepend(DoubleChunk.of(value));
+  }
+
+  public DoubleFingerSeq append(double value) {
+    return append(DoubleChunk.of(value));
+  }
+
+  public double getDouble(int index) {
+    return Double.longBitsToDouble(bitsAt(index));
+  }
+
+  public double first() {
+    return Double.longBitsToDouble(firstBits());
+  }
+
+  public double last() {
+    return Double.longBitsToDouble(lastBits());
+  }
+
+  public double[] toArray() {
+    double[] result = new double[size()];
+    copyTo(result);
+    return result;
+  }
+
+  @Override
+  public PrimitiveIterator.OfDouble iterator() {
+    final BitsIterator<DoubleChunk> bits = bitsIterator();
+    return new PrimitiveIterator.OfDouble() {
+      @Override
+      public boolean hasNext() {
+        return bits.hasNext();
+      }
+
+      @Override
+      public double nextDouble() {
+        return Double.longBitsToDouble(bits.nextBits());
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
@@ -30,6 +30,11 @@ final class Elem<E> implements Container<E> {
     return 1;
   }
 
+  @Override
+  public <V> V measure(Measured<E, V> measured) {
+    return measured.measure(value);
+  }
+
   @Override
   public Iterator<E> iterator() {
     return Iterators.singletonIterator(value);
@@ -0,0 +1,61 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Writes and reads single elements for {@link FingerSeq#writeTo} and {@link FingerSeq#readFrom}.
+ * A codec must read back exactly the bytes it wrote, and must not read or write a length prefix of
+ * its own unless its elements vary in size.
+ */
+public interface ElementCodec<E> {
+  void write(E element, DataOutput out) throws IOException;
+
+  E read(DataInput in) throws IOException;
+
+  /**
+   * Returns a codec for strings in modified UTF-8, as {@link DataOutput#writeUTF} writes them.
+   */
+  static ElementCodec<String> utf() {
+    return new ElementCodec<String>() {
+      @Override
+      public void write(String element, DataOutput out) throws IOException {
+        out.writeUTF(element);
+      }
+
+      @Override
+      public String read(DataInput in) throws IOException {
+        return in.readUTF();
+      }
+    };
+  }
+
+  static ElementCodec<Integer> int32() {
+    return new ElementCodec<Integer>() {
+      @Override
+      public void write(Integer element, DataOutput out) throws IOException {
+        out.writeInt(element);
+      }
+
+      @Override
+      public Integer read(DataInput in) throws IOException {
+        return in.readInt();
+      }
+    };
+  }
+
+  static ElementCodec<Long> int64() {
+    return new ElementCodec<Long>() {
+      @Override
+      public void write(Long element, DataOutput out) throws IOException {
+        out.writeLong(element);
+      }
+
+      @Override
+      public Long read(DataInput in) throws IOException {
+        return in.readLong();
+      }
+    };
+  }
+}
@@ -0,0 +1,180 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+/**
+ * An append-only log of events that remembers every version it has committed. Each append
+ * commits a new version, numbered consecutively from zero, the empty log. Events are numbered by
+ * their offset since the log was created, which never changes, even once older events have been
+ * dropped by {@link #truncateBefore}.
+ *
+ * <p>Every version is a {@link Snapshot} over a persistent {@link FingerSeq}, so successive
+ * versions share all but the last chunk or so of their events: looking up a version takes constant
+ * time, reading any range of it takes logarithmic time, and neither copies events. Remembered
+ * versions keep their events reachable, so a log that drops old events to bound its memory should
+ * also {@link #forgetVersionsBefore forget} the versions that still hold them.
+ *
+ * <p>All methods of the log are synchronized; snapshots are immutable and may be read from any
+ * thread without locking.
+ */
+public final class EventLog<E> {
+  /**
+   * The events of the log as of one version.
+   */
+  public static final class Snapshot<E> {
+    private final long version;
+    private final long startOffset;
+    private final FingerSeq<E> events;
+
+    private Snapshot(long version, long startOffset, FingerSeq<E> events) {
+      this.version = version;
+      this.startOffset = startOffset;
+      this.events = events;
+    }
+
+    public long getVersion() {
+      return version;
+    }
+
+    /**
+     * Returns the offset of the first event still retained in this version.
+     */
+    public long getStartOffset() {
+      return startOffset;
+    }
+
+    /**
+     * Returns the offset the next event appended after this version would have.
+     */
+    public long getEndOffset() {
+      return startOffset + events.size();
+    }
+
+    public FingerSeq<E> getEvents() {
+      return events;
+    }
+
+    /**
+     * Returns the {@code count} events starting at {@code offset}, in logarithmic time.
+     */
+    public FingerSeq<E> read(long offset, int count) {
+      checkArgument(
+          offset >= startOffset && count >= 0 && offset + count <= getEndOffset(),
+          "[%s, %s + %s) is not within [%s, %s)", offset, offset, count, startOffset,
+          getEndOffset());
+      int from = (int) (offset - startOffset);
+      return events.subList(from, from + count);
+    }
+  }
+
+  /**
+   * The remembered snapshots; {@code versions[head + i]} is version {@code firstVersion + i}.
+   */
+  @SuppressWarnings("unchecked")
+  private Snapshot<E>[] versions = new Snapshot[16];
+  private int head;
+  private int tail;
+  private long firstVersion;
+
+  public EventLog() {
+    commit(0, FingerSeq.<E> empty());
+  }
+
+  private long commit(long startOffset, FingerSeq<E> events) {
+    if (tail == versions.length) {
+      // Move the remembered versions to the front, growing the array unless that frees half of it.
+      int size = tail - head;
+      Snapshot<E>[] newVersions =
+          (head >= versions.length / 2) ? versions : Arrays.copyOf(versions, versions.length * 2);
+      System.arraycopy(versions, head, newVersions, 0, size);
+      Arrays.fill(newVersions, size, tail, null);
+      versions = newVersions;
+      head = 0;
+      tail = size;
+    }
+    long version = firstVersion + (tail - head);
+    versions[tail++] = new Snapshot<E>(version, startOffset, events);
+    return version;
+  }
+
+  public synchronized Snapshot<E> current() {
+    return versions[tail - 1];
+  }
+
+  public synchronized long currentVersion() {
+    return current().getVersion();
+  }
+
+  /**
+   * Returns the oldest version that has not been forgotten.
+   */
+  public synchronized long oldestVersion() {
+    return firstVersion;
+  }
+
+  /**
+   * Returns the log as of {@code version}, in constant time.
+   *
+   * @throws IllegalArgumentException if {@code version} has been forgotten or not committed yet
+   */
+  public synchronized Snapshot<E> snapshotAt(long version) {
+    checkArgument(
+        version >= firstVersion && version - firstVersion < tail - head,
+        "version %s is not within [%s, %s]", version, firstVersion, currentVersion());
+    return versions[head + (int) (version - firstVersion)];
+  }
+
+  /**
+   * Returns {@code count} events of the current version, starting at {@code offset}.
+   */
+  public synchronized FingerSeq<E> read(long offset, int count) {
+    return current().read(offset, count);
+  }
+
+  /**
+   * Appends {@code event} and returns the version committed.
+   */
+  public synchronized long append(E event) {
+    Snapshot<E> current = current();
+    return commit(current.startOffset, current.events.append(checkNotNull(event)));
+  }
+
+  /**
+   * Appends all of {@code events} as a single version and returns it.
+   */
+  public synchronized long appendAll(Iterable<? extends E> events) {
+    Snapshot<E> current = current();
+    return commit(current.startOffset, current.events.concat(FingerSeq.copyOf(events)));
+  }
+
+  /**
+   * Drops the events before {@code offset} in logarithmic time, and returns the version
+   * committed. Earlier versions are unaffected and still hold the dropped events.
+   */
+  public synchronized long truncateBefore(long offset) {
+    Snapshot<E> current = current();
+    checkArgument(
+        offset >= current.startOffset && offset <= current.getEndOffset(),
+        "offset %s is not within [%s, %s]", offset, current.startOffset, current.getEndOffset());
+    int from = (int) (offset - current.startOffset);
+    return commit(offset, current.events.subList(from, current.events.size()));
+  }
+
+  /**
+   * Forgets every version before {@code version}, which may be at most the current version, so
+   * that events only they still hold can be reclaimed.
+   */
+  public synchronized void forgetVersionsBefore(long version) {
+    checkArgument(version <= currentVersion(), "cannot forget the current version");
+    if (version <= firstVersion) {
+      return;
+    }
+    int count = (int) (version - firstVersion);
+    Arrays.fill(versions, head, head + count, null);
+    head += count;
+    firstVersion = version;
+  }
+}
@@ -0,0 +1,190 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * An immutable, persistent collection of closed intervals {@code [low, high]}, kept in order of
+ * their low endpoints in a finger tree whose nodes cache the greatest low and the greatest high
+ * endpoint beneath them. Overlap queries skip every subtree that ends before the query starts and
+ * stop at the first interval that starts after it ends, so they take time logarithmic in the size
+ * of the index plus proportional to the number of matches. Insertion takes logarithmic time.
+ *
+ * <p>The endpoints of each element are read with the functions given to {@link #create}; they
+ * must not change while the element is in an index.
+ */
+public final class FingerIntervalIndex<E, C extends Comparable<? super C>>
+    extends AbstractCollection<E> {
+  public static <E, C extends Comparable<? super C>> FingerIntervalIndex<E, C> create(
+      Function<? super E, ? extends C> low,
+      Function<? super E, ? extends C> high) {
+    KeysMeasured<E, C> measured = new KeysMeasured<E, C>(checkNotNull(low), checkNotNull(high));
+    return new FingerIntervalIndex<E, C>(measured, FingerTree.<E, Elem<E>> empty(measured));
+  }
+
+  /**
+   * The greatest low and the greatest high endpoint of a run of intervals.
+   */
+  private static final class Keys<C> {
+    private final C maxLow;
+    private final C maxHigh;
+
+    private Keys(C maxLow, C maxHigh) {
+      this.maxLow = maxLow;
+      this.maxHigh = maxHigh;
+    }
+  }
+
+  private static final class KeysMeasured<E, C extends Comparable<? super C>>
+      extends Measured<E, Keys<C>> {
+    private final Function<? super E, ? extends C> low;
+    private final Function<? super E, ? extends C> high;
+
+    private KeysMeasured(
+        Function<? super E, ? extends C> low,
+        Function<? super E, ? extends C> high) {
+      this.low = low;
+      this.high = high;
+    }
+
+    /**
+     * Returns null, which stands for the keys of an empty run.
+     */
+    @Override
+    public Keys<C> identity() {
+      return null;
+    }
+
+    @Override
+    public Keys<C> combine(Keys<C> left, Keys<C> right) {
+      if (left == null) {
+        return right;
+      } else if (right == null) {
+        return left;
+      }
+      // Intervals are ordered by low endpoint, so the right side always has the greater low.
+      if (right.maxHigh.compareTo(left.maxHigh) >= 0) {
+        return right;
+      }
+      return new Keys<C>(right.maxLow, left.maxHigh);
+    }
+
+    @Override
+    public Keys<C> measure(E element) {
+      return new Keys<C>(low.apply(element), high.apply(element));
+    }
+  }
+
+  private final KeysMeasured<E, C> measured;
+  private final FingerTree<E, Elem<E>> tree;
+
+  private FingerIntervalIndex(KeysMeasured<E, C> measured, FingerTree<E, Elem<E>> tree) {
+    this.measured = measured;
+    this.tree = tree;
+  }
+
+  private FingerIntervalIndex<E, C> withTree(FingerTree<E, Elem<E>> newTree) {
+    return new FingerIntervalIndex<E, C>(measured, newTree);
+  }
+
+  public FingerIntervalIndex<E, C> insert(E e) {
+    final C low = measured.low.apply(e);
+    checkArgument(
+        low.compareTo(measured.high.apply(e)) <= 0,
+        "low endpoint exceeds high endpoint");
+    Optional<Split<Elem<E>, FingerTree<E, Elem<E>>>> split =
+        tree.split(measured, acc -> acc != null && acc.maxLow.compareTo(low) > 0);
+    if (!split.isPresent()) {
+      return withTree(tree.snoc(Elem.of(e)));
+    }
+    @SuppressWarnings("unchecked")
+    Elem<E>[] middle = new Elem[] { Elem.of(e), split.get().getPivot() };
+    return withTree(split.get().getLeft().appendTree(middle, split.get().getRight()));
+  }
+
+  /**
+   * Returns an index with one element equal to {@code e} removed, or this index if it has none.
+   * Takes logarithmic time plus time proportional to the number of intervals with the same low
+   * endpoint as {@code e}.
+   */
+  public FingerIntervalIndex<E, C> delete(E e) {
+    final C low = measured.low.apply(e);
+    Optional<Split<Elem<E>, FingerTree<E, Elem<E>>>> split =
+        tree.split(measured, acc -> acc != null && acc.maxLow.compareTo(low) >= 0);
+    if (!split.isPresent()) {
+      return this;
+    }
+    FingerTree<E, Elem<E>> before = split.get().getLeft();
+    FingerTree<E, Elem<E>> rest = split.get().getRight().cons(split.get().getPivot());
+    while (true) {
+      Optional<View<Elem<E>, FingerTree<E, Elem<E>>>> view = rest.viewL();
+      if (!view.isPresent()) {
+        return this;
+      }
+      E candidate = view.get().getEnd().index(0);
+      if (measured.low.apply(candidate).compareTo(low) != 0) {
+        return this;
+      } else if (candidate.equals(e)) {
+        return withTree(before.concat(view.get().getRemainder()));
+      }
+      before = before.snoc(view.get().getEnd());
+      rest = view.get().getRemainder();
+    }
+  }
+
+  /**
+   * Returns the intervals containing {@code point}, in order of their low endpoints.
+   */
+  public List<E> overlapping(C point) {
+    return overlapping(point, point);
+  }
+
+  /**
+   * Returns the intervals that share at least one point with {@code [low, high]}, in order of
+   * their low endpoints.
+   */
+  public List<E> overlapping(final C low, final C high) {
+    checkArgument(low.compareTo(high) <= 0, "low endpoint exceeds high endpoint");
+    final ImmutableList.Builder<E> builder = ImmutableList.builder();
+    tree.visitWhere(
+        measured,
+        acc -> acc != null && acc.maxHigh.compareTo(low) >= 0,
+        e -> {
+          if (measured.low.apply(e).compareTo(high) > 0) {
+            return false;
+          }
+          builder.add(e);
+          return true;
+        });
+    return builder.build();
+  }
+
+  @Override
+  public int size() {
+    return tree.length();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree.length() == 0;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return tree.iterator();
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return tree.spliterator();
+  }
+}
@@ -0,0 +1,123 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractCollection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+
+import com.google.common.collect.Ordering;
+
+/**
+ * An immutable, persistent max-priority queue backed by a finger tree whose nodes cache the
+ * greatest element beneath them. {@link #peekMax} takes constant time, {@link #insert} amortized
+ * constant time, and {@link #extractMax} and {@link #meld} logarithmic time. Among equal
+ * elements, the one inserted first is extracted first. Iteration is in insertion order.
+ */
+public final class FingerPriorityQueue<E> extends AbstractCollection<E> {
+  public static <E extends Comparable<? super E>> FingerPriorityQueue<E> create() {
+    return create(Ordering.<E> natural());
+  }
+
+  public static <E> FingerPriorityQueue<E> create(Comparator<? super E> comparator) {
+    MaxMeasured<E> measured = new MaxMeasured<E>(comparator);
+    return new FingerPriorityQueue<E>(measured, FingerTree.<E, Elem<E>> empty(measured));
+  }
+
+  private static final class MaxMeasured<E> extends Measured<E, E> {
+    private final Comparator<? super E> comparator;
+
+    private MaxMeasured(Comparator<? super E> comparator) {
+      this.comparator = checkNotNull(comparator);
+    }
+
+    /**
+     * Returns null, which stands for an element smaller than any other.
+     */
+    @Override
+    public E identity() {
+      return null;
+    }
+
+    @Override
+    public E combine(E left, E right) {
+      if (left == null) {
+        return right;
+      } else if (right == null) {
+        return left;
+      }
+      return (comparator.compare(left, right) >= 0) ? left : right;
+    }
+
+    @Override
+    public E measure(E element) {
+      return element;
+    }
+  }
+
+  private final MaxMeasured<E> measured;
+  private final FingerTree<E, Elem<E>> tree;
+
+  private FingerPriorityQueue(MaxMeasured<E> measured, FingerTree<E, Elem<E>> tree) {
+    this.measured = measured;
+    this.tree = tree;
+  }
+
+  public Comparator<? super E> comparator() {
+    return measured.comparator;
+  }
+
+  public FingerPriorityQueue<E> insert(E e) {
+    return new FingerPriorityQueue<E>(measured, tree.snoc(Elem.of(e)));
+  }
+
+  public E peekMax() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return tree.measure(measured);
+  }
+
+  public FingerPriorityQueue<E> extractMax() {
+    final E max = peekMax();
+    Split<Elem<E>, FingerTree<E, Elem<E>>> split = tree
+        .split(measured, acc -> acc != null && measured.comparator.compare(acc, max) >= 0)
+        .get();
+    return new FingerPriorityQueue<E>(measured, split.getLeft().concat(split.getRight()));
+  }
+
+  public FingerPriorityQueue<E> meld(FingerPriorityQueue<E> other) {
+    checkArgument(
+        measured.comparator.equals(other.measured.comparator),
+        "queues must have the same comparator");
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    return new FingerPriorityQueue<E>(measured, tree.concat(other.tree));
+  }
+
+  @Override
+  public int size() {
+    return tree.length();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree.length() == 0;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return tree.iterator();
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return tree.spliterator();
+  }
+}
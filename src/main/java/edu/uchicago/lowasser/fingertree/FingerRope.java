@@ -0,0 +1,188 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.util.Iterator;
+
+/**
+ * An immutable, persistent text buffer backed by a finger tree of {@code char[]} chunks whose nodes
+ * cache the number of chars and line feeds beneath them. {@link #charAt}, {@link #subSequence},
+ * {@link #insert}, {@link #delete}, {@link #lineStart} and {@link #lineOf} all take logarithmic
+ * time in the length of the text, plus time linear in the size of any inserted text.
+ *
+ * <p>Lines are separated by {@code '\n'}; a rope with {@code k} line feeds has {@code k + 1}
+ * lines, the last of which may be empty.
+ */
+public final class FingerRope implements CharSequence {
+  private static final FingerRope EMPTY =
+      new FingerRope(FingerTree.<Character, CharChunk> empty(CharChunk.LINES));
+
+  public static FingerRope empty() {
+    return EMPTY;
+  }
+
+  public static FingerRope of(CharSequence text) {
+    if (text instanceof FingerRope) {
+      return (FingerRope) text;
+    }
+    return wrap(build(text));
+  }
+
+  private static FingerTree<Character, CharChunk> build(CharSequence text) {
+    int length = text.length();
+    CharChunk[] chunks = new CharChunk[(length + CharChunk.CAPACITY - 1) / CharChunk.CAPACITY];
+    for (int i = 0; i < chunks.length; i++) {
+      int from = i * CharChunk.CAPACITY;
+      int to = Math.min(length, from + CharChunk.CAPACITY);
+      char[] chars = new char[to - from];
+      for (int j = from; j < to; j++) {
+        chars[j - from] = text.charAt(j);
+      }
+      chunks[i] = CharChunk.wrap(chars);
+    }
+    return FingerTree.fromArray(CharChunk.LINES, chunks, 0, chunks.length);
+  }
+
+  private static FingerRope wrap(FingerTree<Character, CharChunk> tree) {
+    return tree.isEmpty() ? EMPTY : new FingerRope(tree);
+  }
+
+  private final FingerTree<Character, CharChunk> tree;
+
+  private FingerRope(FingerTree<Character, CharChunk> tree) {
+    this.tree = tree;
+  }
+
+  @Override
+  public int length() {
+    return tree.length();
+  }
+
+  @Override
+  public char charAt(int index) {
+    return (char) FingerTree.bitsAt(tree, index);
+  }
+
+  @Override
+  public FingerRope subSequence(int start, int end) {
+    checkPositionIndexes(start, end, length());
+    return wrap(take(drop(tree, start), end - start));
+  }
+
+  public FingerRope concat(CharSequence text) {
+    FingerRope other = of(checkNotNull(text));
+    return wrap(concat(tree, other.tree));
+  }
+
+  public FingerRope insert(int offset, CharSequence text) {
+    return replace(offset, offset, text);
+  }
+
+  public FingerRope delete(int start, int end) {
+    return replace(start, end, "");
+  }
+
+  /**
+   * Returns a rope with the chars in {@code [start, end)} replaced by {@code text}.
+   */
+  public FingerRope replace(int start, int end, CharSequence text) {
+    checkPositionIndexes(start, end, length());
+    FingerTree<Character, CharChunk> middle = of(checkNotNull(text)).tree;
+    return wrap(concat(concat(take(tree, start), middle), drop(tree, end)));
+  }
+
+  /**
+   * Returns the number of lines, which is one more than the number of line feeds.
+   */
+  public int lineCount() {
+    return tree.measure(CharChunk.LINES) + 1;
+  }
+
+  /**
+   * Returns the offset at which line {@code line}, counting from zero, starts.
+   */
+  public int lineStart(final int line) {
+    checkElementIndex(line, lineCount());
+    if (line == 0) {
+      return 0;
+    }
+    Split<CharChunk, FingerTree<Character, CharChunk>> split =
+        tree.split(CharChunk.LINES, acc -> acc >= line).get();
+    FingerTree<Character, CharChunk> before = split.getLeft();
+    int feed = split.getPivot().lineFeed(line - before.measure(CharChunk.LINES));
+    return before.length() + feed + 1;
+  }
+
+  /**
+   * Returns the line, counting from zero, that the char at {@code offset} belongs to. An offset of
+   * {@link #length} belongs to the last line.
+   */
+  public int lineOf(int offset) {
+    checkPositionIndex(offset, length());
+    if (offset == length()) {
+      return lineCount() - 1;
+    }
+    Split<CharChunk, FingerTree<Character, CharChunk>> split = tree.splitAt(offset);
+    FingerTree<Character, CharChunk> before = split.getLeft();
+    return before.measure(CharChunk.LINES)
+        + split.getPivot().linesBefore(offset - before.length());
+  }
+
+  /**
+   * Concatenates two trees, merging the chunks where they meet if they fit in one.
+   */
+  private static FingerTree<Character, CharChunk> concat(
+      FingerTree<Character, CharChunk> left,
+      FingerTree<Character, CharChunk> right) {
+    if (left.isEmpty()) {
+      return right;
+    } else if (right.isEmpty()) {
+      return left;
+    }
+    CharChunk leftEnd = left.lastOrNull();
+    CharChunk rightEnd = right.firstOrNull();
+    if (leftEnd.length() + rightEnd.length() > CharChunk.CAPACITY) {
+      return left.concat(right);
+    }
+    CharChunk[] middle = { leftEnd.concat(rightEnd) };
+    return left.removeLast().appendTree(middle, right.removeFirst());
+  }
+
+  private static FingerTree<Character, CharChunk> take(
+      FingerTree<Character, CharChunk> tree,
+      int n) {
+    if (n == tree.length()) {
+      return tree;
+    }
+    Split<CharChunk, FingerTree<Character, CharChunk>> split = tree.splitAt(n);
+    int offset = n - split.getLeft().length();
+    if (offset == 0) {
+      return split.getLeft();
+    }
+    return split.getLeft().snoc(split.getPivot().slice(0, offset));
+  }
+
+  private static FingerTree<Character, CharChunk> drop(
+      FingerTree<Character, CharChunk> tree,
+      int n) {
+    if (n == tree.length()) {
+      return FingerTree.empty(CharChunk.LINES);
+    }
+    Split<CharChunk, FingerTree<Character, CharChunk>> split = tree.splitAt(n);
+    CharChunk pivot = split.getPivot();
+    int offset = n - split.getLeft().length();
+    return split.getRight().cons(pivot.slice(offset, pivot.length()));
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(length());
+    for (Iterator<CharChunk> leaves = tree.leafIterator(); leaves.hasNext();) {
+      leaves.next().appendTo(builder);
+    }
+    return builder.toString();
+  }
+}
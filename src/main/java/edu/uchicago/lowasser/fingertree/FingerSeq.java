@@ -0,0 +1,575 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkPositionIndex;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+
+/**
+ * An immutable, persistent sequence backed by a finger tree. Adding to either end takes amortized
+ * constant time, concatenation and indexing take logarithmic time, and every operation leaves the
+ * original sequence untouched. Null elements are not permitted.
+ *
+ * <p>Elements are stored in {@link Chunk}s of up to {@link Chunk#CAPACITY} elements at the leaves
+ * of the tree; {@link #prepend} and {@link #append} fill the chunk at that end before adding a new
+ * one to the tree.
+ */
+public final class FingerSeq<E> extends AbstractList<E> {
+  private static final FingerSeq<Object> EMPTY =
+      new FingerSeq<Object>(FingerTree.<Object, Chunk<Object>> empty());
+
+  @SuppressWarnings("unchecked")
+  public static <E> FingerSeq<E> empty() {
+    return (FingerSeq<E>) EMPTY;
+  }
+
+  @SafeVarargs
+  public static <E> FingerSeq<E> of(E... elements) {
+    return copyOf(Arrays.asList(elements));
+  }
+
+  /**
+   * Returns a sequence of {@code elements}, built bottom-up in linear time.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> FingerSeq<E> copyOf(Iterable<? extends E> elements) {
+    if (elements instanceof FingerSeq) {
+      return (FingerSeq<E>) elements;
+    }
+    Object[] array = (elements instanceof Collection)
+        ? ((Collection<?>) elements).toArray()
+        : Iterables.toArray(elements, Object.class);
+    return wrap(FingerSeq.<E> build(array, 0, array.length));
+  }
+
+  /**
+   * Returns a sequence of {@code elements}, built by chunking and building disjoint ranges of them
+   * in parallel on the common fork-join pool, then concatenating the pieces.
+   */
+  @SuppressWarnings("unchecked")
+  public static <E> FingerSeq<E> parallelCopyOf(Collection<? extends E> elements) {
+    if (elements instanceof FingerSeq) {
+      return (FingerSeq<E>) elements;
+    }
+    Object[] array = elements.toArray();
+    return wrap(ForkJoinPool.commonPool().invoke(new BuildTask<E>(array, 0, array.length)));
+  }
+
+  /**
+   * Builds a tree of the elements in {@code elements[from, to)}, cutting them into full chunks
+   * from {@code from} onwards.
+   */
+  @SuppressWarnings("unchecked")
+  private static <E> FingerTree<E, Chunk<E>> build(Object[] elements, int from, int to) {
+    Chunk<E>[] chunks = new Chunk[(to - from + Chunk.CAPACITY - 1) / Chunk.CAPACITY];
+    for (int i = 0; i < chunks.length; i++) {
+      int start = from + i * Chunk.CAPACITY;
+      Object[] contents = Arrays.copyOfRange(elements, start, Math.min(to, start + Chunk.CAPACITY));
+      for (Object e : contents) {
+        checkNotNull(e);
+      }
+      chunks[i] = Chunk.wrap(contents);
+    }
+    return FingerTree.fromArray(Measured.<E> size(), chunks, 0, chunks.length);
+  }
+
+  private static final class BuildTask<E> extends RecursiveTask<FingerTree<E, Chunk<E>>> {
+    private static final long serialVersionUID = 0;
+
+    private static final int SEQUENTIAL_THRESHOLD = Chunk.CAPACITY * 1024;
+
+    private final Object[] elements;
+    private final int from;
+    private final int to;
+
+    private BuildTask(Object[] elements, int from, int to) {
+      this.elements = elements;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected FingerTree<E, Chunk<E>> compute() {
+      if (to - from <= SEQUENTIAL_THRESHOLD) {
+        return build(elements, from, to);
+      }
+      // Cut on a chunk boundary so that only the last chunk of the sequence can be partial.
+      int mid = from + (to - from) / (2 * Chunk.CAPACITY) * Chunk.CAPACITY;
+      BuildTask<E> left = new BuildTask<E>(elements, from, mid);
+      left.fork();
+      FingerTree<E, Chunk<E>> right = new BuildTask<E>(elements, mid, to).compute();
+      return left.join().concat(right);
+    }
+  }
+
+  private static <E> FingerSeq<E> wrap(FingerTree<E, Chunk<E>> tree) {
+    return (tree.length() == 0) ? FingerSeq.<E> empty() : new FingerSeq<E>(tree);
+  }
+
+  public static <E> Builder<E> builder() {
+    return new Builder<E>();
+  }
+
+  /**
+   * A mutable builder for a {@link FingerSeq}, for adding many elements at once. Elements are
+   * written into chunk buffers, and full chunks into a {@link TreeBuilder}, so that adding an
+   * element allocates nothing until a chunk fills up. A builder may go on being used after
+   * {@link #build}.
+   */
+  public static final class Builder<E> {
+    private final TreeBuilder<E, Chunk<E>> tree = new TreeBuilder<E, Chunk<E>>(Measured.<E> size());
+    private Object[] front = new Object[Chunk.CAPACITY];
+    private int frontStart = Chunk.CAPACITY;
+    private Object[] back = new Object[Chunk.CAPACITY];
+    private int backEnd = 0;
+
+    private Builder() {}
+
+    public Builder<E> add(E e) {
+      back[backEnd++] = checkNotNull(e);
+      if (backEnd == Chunk.CAPACITY) {
+        tree.snoc(Chunk.<E> wrap(back));
+        back = new Object[Chunk.CAPACITY];
+        backEnd = 0;
+      }
+      return this;
+    }
+
+    public Builder<E> addAll(Iterable<? extends E> elements) {
+      for (E e : elements) {
+        add(e);
+      }
+      return this;
+    }
+
+    public Builder<E> addFirst(E e) {
+      front[--frontStart] = checkNotNull(e);
+      if (frontStart == 0) {
+        tree.cons(Chunk.<E> wrap(front));
+        front = new Object[Chunk.CAPACITY];
+        frontStart = Chunk.CAPACITY;
+      }
+      return this;
+    }
+
+    public FingerSeq<E> build() {
+      FingerTree<E, Chunk<E>> result = tree.build();
+      if (frontStart < Chunk.CAPACITY) {
+        result = result.cons(Chunk.<E> wrap(Arrays.copyOfRange(front, frontStart, Chunk.CAPACITY)));
+      }
+      if (backEnd > 0) {
+        result = result.snoc(Chunk.<E> wrap(Arrays.copyOf(back, backEnd)));
+      }
+      return wrap(result);
+    }
+  }
+
+  /**
+   * The first bytes of a serialized sequence, "FSeq" in ASCII.
+   */
+  private static final int MAGIC = 0x46536571;
+  private static final byte FORMAT_VERSION = 1;
+
+  /**
+   * Writes this sequence to {@code out} in a compact binary format: a four-byte magic number, a
+   * format version byte and the size, followed by each element as written by {@code codec}. Wraps
+   * {@code out} in a buffer of its own, which is flushed but not closed.
+   */
+  public void writeTo(OutputStream out, ElementCodec<? super E> codec) throws IOException {
+    checkNotNull(codec);
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(checkNotNull(out)));
+    data.writeInt(MAGIC);
+    data.writeByte(FORMAT_VERSION);
+    data.writeInt(size());
+    for (Iterator<Chunk<E>> leaves = tree.leafIterator(); leaves.hasNext();) {
+      Chunk<E> chunk = leaves.next();
+      for (int i = 0; i < chunk.length(); i++) {
+        codec.write(chunk.index(i), data);
+      }
+    }
+    data.flush();
+  }
+
+  public void writeTo(WritableByteChannel channel, ElementCodec<? super E> codec)
+      throws IOException {
+    writeTo(Channels.newOutputStream(channel), codec);
+  }
+
+  /**
+   * Reads a sequence written by {@link #writeTo}, decoding elements with {@code codec} straight
+   * into full chunks and building the tree in linear time. Wraps {@code in} in a buffer of its own,
+   * which may read past the end of the sequence, so nothing after the sequence can be read from
+   * {@code in} afterwards. {@code in} is not closed.
+   *
+   * @throws IOException if {@code in} does not hold a sequence in a format this version can read
+   */
+  public static <E> FingerSeq<E> readFrom(InputStream in, ElementCodec<? extends E> codec)
+      throws IOException {
+    checkNotNull(codec);
+    DataInputStream data = new DataInputStream(new BufferedInputStream(checkNotNull(in)));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("not a serialized FingerSeq");
+    }
+    byte version = data.readByte();
+    if (version != FORMAT_VERSION) {
+      throw new IOException("unsupported FingerSeq format version " + version);
+    }
+    int size = data.readInt();
+    if (size < 0) {
+      throw new IOException("negative FingerSeq size " + size);
+    }
+    Builder<E> builder = builder();
+    for (int i = 0; i < size; i++) {
+      E e = codec.read(data);
+      if (e == null) {
+        throw new IOException("codec read a null element");
+      }
+      builder.add(e);
+    }
+    return builder.build();
+  }
+
+  public static <E> FingerSeq<E> readFrom(
+      ReadableByteChannel channel,
+      ElementCodec<? extends E> codec) throws IOException {
+    return readFrom(Channels.newInputStream(channel), codec);
+  }
+
+  private final FingerTree<E, Chunk<E>> tree;
+
+  private FingerSeq(FingerTree<E, Chunk<E>> tree) {
+    this.tree = tree;
+  }
+
+  FingerTree<E, Chunk<E>> tree() {
+    return tree;
+  }
+
+  public FingerSeq<E> prepend(E e) {
+    if (!isEmpty()) {
+      Chunk<E> first = tree.firstOrNull();
+      if (!first.isFull()) {
+        return new FingerSeq<E>(tree.replaceFirst(first.cons(e)));
+      }
+    }
+    return new FingerSeq<E>(tree.cons(Chunk.of(e)));
+  }
+
+  public FingerSeq<E> append(E e) {
+    if (!isEmpty()) {
+      Chunk<E> last = tree.lastOrNull();
+      if (!last.isFull()) {
+        return new FingerSeq<E>(tree.replaceLast(last.snoc(e)));
+      }
+    }
+    return new FingerSeq<E>(tree.snoc(Chunk.of(e)));
+  }
+
+  public FingerSeq<E> concat(FingerSeq<? extends E> other) {
+    @SuppressWarnings("unchecked")
+    FingerSeq<E> that = (FingerSeq<E>) checkNotNull(other);
+    if (that.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return that;
+    }
+    return new FingerSeq<E>(concat(tree, that.tree));
+  }
+
+  /**
+   * Concatenates two trees, merging the chunks where they meet if they fit in one, so that
+   * repeated concatenation of short sequences does not leave the tree full of tiny chunks.
+   */
+  private static <E> FingerTree<E, Chunk<E>> concat(
+      FingerTree<E, Chunk<E>> left,
+      FingerTree<E, Chunk<E>> right) {
+    if (left.length() == 0) {
+      return right;
+    } else if (right.length() == 0) {
+      return left;
+    }
+    View<Chunk<E>, FingerTree<E, Chunk<E>>> leftView = left.viewR().get();
+    View<Chunk<E>, FingerTree<E, Chunk<E>>> rightView = right.viewL().get();
+    Chunk<E> leftEnd = leftView.getEnd();
+    Chunk<E> rightEnd = rightView.getEnd();
+    if (leftEnd.length() + rightEnd.length() > Chunk.CAPACITY) {
+      return left.concat(right);
+    }
+    @SuppressWarnings("unchecked")
+    Chunk<E>[] middle = new Chunk[] { leftEnd.concat(rightEnd) };
+    return leftView.getRemainder().appendTree(middle, rightView.getRemainder());
+  }
+
+  public FingerSeq<E> insert(int index, E e) {
+    checkPositionIndex(index, size());
+    if (index == size()) {
+      return append(e);
+    }
+    Split<Chunk<E>, FingerTree<E, Chunk<E>>> split = tree.splitAt(index);
+    int offset = index - split.getLeft().length();
+    Chunk<E>[] middle = split.getPivot().insert(offset, e);
+    return new FingerSeq<E>(split.getLeft().appendTree(middle, split.getRight()));
+  }
+
+  public FingerSeq<E> removeAt(int index) {
+    checkElementIndex(index, size());
+    Split<Chunk<E>, FingerTree<E, Chunk<E>>> split = tree.splitAt(index);
+    Chunk<E> pivot = split.getPivot();
+    if (pivot.length() == 1) {
+      return wrap(concat(split.getLeft(), split.getRight()));
+    }
+    int offset = index - split.getLeft().length();
+    @SuppressWarnings("unchecked")
+    Chunk<E>[] middle = new Chunk[] { pivot.remove(offset) };
+    return new FingerSeq<E>(split.getLeft().appendTree(middle, split.getRight()));
+  }
+
+  /**
+   * Returns a sequence with the element at {@code index} replaced by {@code e}. Takes logarithmic
+   * time: only the chunk holding the element and the path above it are copied.
+   */
+  public FingerSeq<E> update(int index, final E e) {
+    checkElementIndex(index, size());
+    checkNotNull(e);
+    return new FingerSeq<E>(tree.adjust(index, (chunk, offset) -> chunk.set(offset, e)));
+  }
+
+  /**
+   * Returns a sequence with the element at {@code index} replaced by the result of applying
+   * {@code operator} to it, copying only the path to it as {@link #update} does.
+   */
+  public FingerSeq<E> modify(int index, final UnaryOperator<E> operator) {
+    checkElementIndex(index, size());
+    checkNotNull(operator);
+    return new FingerSeq<E>(tree.adjust(
+        index,
+        (chunk, offset) -> chunk.set(offset, operator.apply(chunk.index(offset)))));
+  }
+
+  /**
+   * Returns this sequence without its first element, in amortized constant time and without
+   * searching the tree.
+   *
+   * @throws NoSuchElementException if this sequence is empty
+   */
+  public FingerSeq<E> withoutFirst() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    Chunk<E> first = tree.firstOrNull();
+    if (first.length() == 1) {
+      return wrap(tree.removeFirst());
+    }
+    return new FingerSeq<E>(tree.replaceFirst(first.remove(0)));
+  }
+
+  /**
+   * Returns this sequence without its last element, in amortized constant time and without
+   * searching the tree.
+   *
+   * @throws NoSuchElementException if this sequence is empty
+   */
+  public FingerSeq<E> withoutLast() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    Chunk<E> last = tree.lastOrNull();
+    if (last.length() == 1) {
+      return wrap(tree.removeLast());
+    }
+    return new FingerSeq<E>(tree.replaceLast(last.remove(last.length() - 1)));
+  }
+
+  @Override
+  public FingerSeq<E> subList(int fromIndex, int toIndex) {
+    checkPositionIndexes(fromIndex, toIndex, size());
+    return wrap(take(drop(tree, fromIndex), toIndex - fromIndex));
+  }
+
+  /**
+   * Returns a sequence with the elements in {@code [fromIndex, toIndex)} replaced by those of
+   * {@code replacement}. Takes time logarithmic in the size of this sequence plus linear in the
+   * size of the replacement: the sequence is cut at both ends of the range and the pieces are
+   * concatenated around the replacement, sharing everything outside the range.
+   */
+  public FingerSeq<E> splice(int fromIndex, int toIndex, Iterable<? extends E> replacement) {
+    checkPositionIndexes(fromIndex, toIndex, size());
+    FingerSeq<E> middle = copyOf(replacement);
+    FingerTree<E, Chunk<E>> left = take(tree, fromIndex);
+    return wrap(concat(concat(left, middle.tree), drop(tree, toIndex)));
+  }
+
+  /**
+   * Returns a sequence with the elements of {@code other} inserted at {@code index}, in time
+   * logarithmic in the sizes of both sequences.
+   */
+  public FingerSeq<E> insertAll(int index, FingerSeq<? extends E> other) {
+    return splice(index, index, other);
+  }
+
+  /**
+   * Returns a sequence without the elements in {@code [fromIndex, toIndex)}, in logarithmic
+   * time. This is not named {@code removeRange}, which {@link AbstractList} reserves for
+   * mutation.
+   */
+  public FingerSeq<E> deleteRange(int fromIndex, int toIndex) {
+    checkPositionIndexes(fromIndex, toIndex, size());
+    if (fromIndex == toIndex) {
+      return this;
+    }
+    return wrap(concat(take(tree, fromIndex), drop(tree, toIndex)));
+  }
+
+  private static <E> FingerTree<E, Chunk<E>> take(FingerTree<E, Chunk<E>> tree, int n) {
+    if (n == tree.length()) {
+      return tree;
+    }
+    Split<Chunk<E>, FingerTree<E, Chunk<E>>> split = tree.splitAt(n);
+    int offset = n - split.getLeft().length();
+    if (offset == 0) {
+      return split.getLeft();
+    }
+    return split.getLeft().snoc(split.getPivot().slice(0, offset));
+  }
+
+  private static <E> FingerTree<E, Chunk<E>> drop(FingerTree<E, Chunk<E>> tree, int n) {
+    if (n == tree.length()) {
+      return FingerTree.empty();
+    }
+    Split<Chunk<E>, FingerTree<E, Chunk<E>>> split = tree.splitAt(n);
+    Chunk<E> pivot = split.getPivot();
+    int offset = n - split.getLeft().length();
+    return split.getRight().cons(pivot.slice(offset, pivot.length()));
+  }
+
+  public E first() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return tree.firstOrNull().index(0);
+  }
+
+  public E last() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    Chunk<E> last = tree.lastOrNull();
+    return last.index(last.length() - 1);
+  }
+
+  @Override
+  public E get(int index) {
+    checkElementIndex(index, size());
+    return tree.index(index);
+  }
+
+  @Override
+  public int size() {
+    return tree.length();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree.length() == 0;
+  }
+
+  /**
+   * Returns the changes that turn {@code older} into {@code newer}, in increasing order of
+   * position. Subtrees the two versions share are skipped without being looked at, so comparing a
+   * version with one derived from it by a few edits takes time proportional to the edits rather
+   * than to the size of the sequences. Changes that keep the shape of the tree, such as
+   * {@link #update}, are reported element by element; once an insertion or deletion shifts the
+   * rest of the tree, everything between the first and last such shift is reported as one change,
+   * which may include elements that are in fact equal.
+   */
+  public static List<Change> diff(FingerSeq<?> older, FingerSeq<?> newer) {
+    @SuppressWarnings("unchecked")
+    FingerTree<Object, ?> a = (FingerTree<Object, ?>) older.tree;
+    @SuppressWarnings("unchecked")
+    FingerTree<Object, ?> b = (FingerTree<Object, ?>) newer.tree;
+    return FingerTree.diff(a, b);
+  }
+
+  /**
+   * Returns the same hash as any other {@link List} with these elements. Nodes of the tree cache
+   * their part of the hash, so after the first call, hashing a version derived from this one
+   * rehashes only what it changed.
+   */
+  @Override
+  public int hashCode() {
+    return ContentHash.pow31(size()) + tree.contentHash();
+  }
+
+  /**
+   * Compares this sequence with {@code obj} as {@link List#equals} does, but compares another
+   * {@code FingerSeq} by diffing the two trees, which skips any structure they share.
+   */
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof FingerSeq)) {
+      return super.equals(obj);
+    }
+    FingerSeq<?> other = (FingerSeq<?>) obj;
+    if ((Object) tree == other.tree) {
+      return true;
+    } else if (size() != other.size()) {
+      return false;
+    }
+    for (Change change : diff(this, other)) {
+      if (change.getOldEnd() - change.getOldStart() != change.getNewEnd() - change.getNewStart()
+          || !Iterators.elementsEqual(
+              subList(change.getOldStart(), change.getOldEnd()).iterator(),
+              other.subList(change.getNewStart(), change.getNewEnd()).iterator())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return tree.iterator();
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return tree.spliterator();
+  }
+
+  /**
+   * Returns an iterator over the elements of this sequence from last to first.
+   */
+  public Iterator<E> reverseIterator() {
+    return tree.reverseIterator();
+  }
+
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    tree.forEach(action);
+  }
+}
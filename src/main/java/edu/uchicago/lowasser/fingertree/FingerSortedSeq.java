@@ -0,0 +1,218 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.AbstractCollection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Predicate;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.Ordering;
+
+/**
+ * An immutable, persistent sorted multiset backed by a finger tree whose nodes cache the last
+ * (greatest) element beneath them. Insertion, deletion, membership, rank and {@link #floor} /
+ * {@link #ceiling} take logarithmic time, and {@link #merge} of sequences of sizes {@code m <= n}
+ * takes {@code O(m log(n/m))}. Equal elements are kept in insertion order.
+ */
+public final class FingerSortedSeq<E> extends AbstractCollection<E> {
+  public static <E extends Comparable<? super E>> FingerSortedSeq<E> create() {
+    return create(Ordering.<E> natural());
+  }
+
+  public static <E> FingerSortedSeq<E> create(Comparator<? super E> comparator) {
+    return new FingerSortedSeq<E>(
+        checkNotNull(comparator),
+        FingerTree.<E, Elem<E>> empty(FingerSortedSeq.<E> lastMeasured()));
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static final Measured LAST = new Measured<Object, Object>() {
+    /**
+     * Returns null, which stands for the key of an empty sequence.
+     */
+    @Override
+    public Object identity() {
+      return null;
+    }
+
+    @Override
+    public Object combine(Object left, Object right) {
+      return (right == null) ? left : right;
+    }
+
+    @Override
+    public Object measure(Object element) {
+      return element;
+    }
+  };
+
+  @SuppressWarnings("unchecked")
+  private static <E> Measured<E, E> lastMeasured() {
+    return LAST;
+  }
+
+  private final Comparator<? super E> comparator;
+  private final FingerTree<E, Elem<E>> tree;
+
+  private FingerSortedSeq(Comparator<? super E> comparator, FingerTree<E, Elem<E>> tree) {
+    this.comparator = comparator;
+    this.tree = tree;
+  }
+
+  private FingerSortedSeq<E> withTree(FingerTree<E, Elem<E>> newTree) {
+    return new FingerSortedSeq<E>(comparator, newTree);
+  }
+
+  public Comparator<? super E> comparator() {
+    return comparator;
+  }
+
+  private Predicate<E> atLeast(final E e) {
+    return acc -> acc != null && comparator.compare(acc, e) >= 0;
+  }
+
+  private Predicate<E> greaterThan(final E e) {
+    return acc -> acc != null && comparator.compare(acc, e) > 0;
+  }
+
+  public FingerSortedSeq<E> insert(E e) {
+    Optional<Split<Elem<E>, FingerTree<E, Elem<E>>>> split =
+        tree.split(FingerSortedSeq.<E> lastMeasured(), greaterThan(e));
+    if (!split.isPresent()) {
+      return withTree(tree.snoc(Elem.of(e)));
+    }
+    @SuppressWarnings("unchecked")
+    Elem<E>[] middle = new Elem[] { Elem.of(e), split.get().getPivot() };
+    return withTree(split.get().getLeft().appendTree(middle, split.get().getRight()));
+  }
+
+  /**
+   * Returns a sequence with one occurrence of {@code e} removed, or this sequence if it has none.
+   */
+  public FingerSortedSeq<E> delete(E e) {
+    Optional<Split<Elem<E>, FingerTree<E, Elem<E>>>> split =
+        tree.split(FingerSortedSeq.<E> lastMeasured(), atLeast(e));
+    if (!split.isPresent() || comparator.compare(split.get().getPivot().index(0), e) != 0) {
+      return this;
+    }
+    return withTree(split.get().getLeft().concat(split.get().getRight()));
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    @SuppressWarnings("unchecked")
+    E e = (E) checkNotNull(o);
+    int i = rank(e);
+    return i < size() && comparator.compare(tree.index(i), e) == 0;
+  }
+
+  /**
+   * Returns the number of elements strictly less than {@code e}.
+   */
+  public int rank(E e) {
+    return tree.find(FingerSortedSeq.<E> lastMeasured(), atLeast(checkNotNull(e)));
+  }
+
+  public E get(int index) {
+    checkElementIndex(index, size());
+    return tree.index(index);
+  }
+
+  /**
+   * Returns the greatest element less than or equal to {@code e}, or null if there is none.
+   */
+  public E floor(E e) {
+    int i = tree.find(FingerSortedSeq.<E> lastMeasured(), greaterThan(checkNotNull(e)));
+    return (i == 0) ? null : tree.index(i - 1);
+  }
+
+  /**
+   * Returns the least element greater than or equal to {@code e}, or null if there is none.
+   */
+  public E ceiling(E e) {
+    int i = rank(e);
+    return (i == size()) ? null : tree.index(i);
+  }
+
+  public E first() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return tree.firstOrNull().index(0);
+  }
+
+  public E last() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return tree.measure(FingerSortedSeq.<E> lastMeasured());
+  }
+
+  /**
+   * Merges this sequence with {@code other}, which must have the same comparator. The sequences
+   * are cut alternately at each other's heads, so long runs that fall entirely within one
+   * sequence are carried over as whole subtrees.
+   */
+  public FingerSortedSeq<E> merge(FingerSortedSeq<E> other) {
+    checkArgument(comparator.equals(other.comparator), "sequences must have the same comparator");
+    if (other.isEmpty()) {
+      return this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    FingerTree<E, Elem<E>> result = FingerTree.empty(FingerSortedSeq.<E> lastMeasured());
+    FingerTree<E, Elem<E>> as = tree;
+    FingerTree<E, Elem<E>> bs = other.tree;
+    boolean swapped = false;
+    while (true) {
+      Optional<View<Elem<E>, FingerTree<E, Elem<E>>>> view = bs.viewL();
+      if (!view.isPresent()) {
+        return withTree(result.concat(as));
+      }
+      Elem<E> b = view.get().getEnd();
+      // Equal elements of the receiver go before those of the argument.
+      Optional<Split<Elem<E>, FingerTree<E, Elem<E>>>> split = as.split(
+          FingerSortedSeq.<E> lastMeasured(),
+          swapped ? atLeast(b.index(0)) : greaterThan(b.index(0)));
+      FingerTree<E, Elem<E>> left;
+      FingerTree<E, Elem<E>> right;
+      if (split.isPresent()) {
+        left = split.get().getLeft();
+        right = split.get().getRight().cons(split.get().getPivot());
+      } else {
+        left = as;
+        right = FingerTree.empty(FingerSortedSeq.<E> lastMeasured());
+      }
+      result = result.concat(left).snoc(b);
+      as = view.get().getRemainder();
+      bs = right;
+      swapped = !swapped;
+    }
+  }
+
+  @Override
+  public int size() {
+    return tree.length();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return tree.length() == 0;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return tree.iterator();
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return tree.spliterator();
+  }
+}
@@ -1,58 +1,89 @@
 package edu.uchicago.lowasser.fingertree;
 
+import static com.google.common.base.Preconditions.checkElementIndex;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Iterators;
 import com.google.common.collect.ObjectArrays;
 
 abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
 
-  @SuppressWarnings("unchecked")
   public static final <E, T extends Container<E>> FingerTree<E, T> empty() {
-    return EMPTY;
+    return empty(Measured.<E> size());
   }
 
-  public static final <E, T extends Container<E>> FingerTree<E, T> single(T single) {
-    return new Single<E, T>(single);
+  @SuppressWarnings("unchecked")
+  public static final <E, T extends Container<E>> FingerTree<E, T> empty(Measured<E, ?> measured) {
+    return measured.empty;
+  }
+
+  public static final <E, T extends Container<E>> FingerTree<E, T> single(
+      Measured<E, ?> measured,
+      T single) {
+    return new Single<E, T>(measured, single);
   }
 
   public static final <E, T extends Container<E>> FingerTree<E, T> deep(
+      Measured<E, ?> measured,
       Digit<E, T> pre,
       FingerTree<E, Node<E, T>> mid,
       Digit<E, T> suf) {
-    return new Deep<E, T>(pre, mid, suf);
+    return new Deep<E, T>(measured, pre, mid, suf);
   }
 
   public static <E, T extends Container<E>> FingerTree<E, T> fromList(List<T> list) {
-    int len = list.size();
-    if (len <= 8) {
-      return small(list);
-    } else {
-      Digit<E, T> left = new Digit<E, T>(list.subList(0, 4));
-      Digit<E, T> right = new Digit<E, T>(list.subList(len - 4, 4));
-      List<T> midElems = list.subList(4, len - 4);
-      return deep(left, fromList(Arrays.asList(groupIntoNodes(midElems))), right);
+    return fromList(Measured.<E> size(), list);
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E, T extends Container<E>> FingerTree<E, T> fromList(
+      Measured<E, ?> measured,
+      List<T> list) {
+    T[] contents = list.toArray((T[]) new Container[list.size()]);
+    return fromArray(measured, contents, 0, contents.length);
+  }
+
+  /**
+   * Builds a tree holding {@code contents[from, to)} in linear time. Each level takes three items
+   * for each digit and groups the rest into nodes in a single pass; the nodes become the contents
+   * of the level below.
+   */
+  static <E, T extends Container<E>> FingerTree<E, T> fromArray(
+      Measured<E, ?> measured,
+      T[] contents,
+      int from,
+      int to) {
+    if (to - from <= 8) {
+      return small(measured, Arrays.copyOfRange(contents, from, to));
     }
+    Digit<E, T> pre = new Digit<E, T>(measured, Arrays.copyOfRange(contents, from, from + 3));
+    Digit<E, T> suf = new Digit<E, T>(measured, Arrays.copyOfRange(contents, to - 3, to));
+    Node<E, T>[] nodes = groupIntoNodes(measured, contents, from + 3, to - 3);
+    return deep(measured, pre, fromArray(measured, nodes, 0, nodes.length), suf);
   }
 
   @SuppressWarnings("unchecked")
-  static <E, T extends Container<E>> FingerTree<E, T> small(List<T> contents) {
-    return small(contents.toArray((T[]) new Container[0]));
+  static <E, T extends Container<E>> FingerTree<E, T> small(
+      Measured<E, ?> measured,
+      List<T> contents) {
+    return small(measured, contents.toArray((T[]) new Container[0]));
   }
 
-  static <E, T extends Container<E>> FingerTree<E, T> small(T[] contents) {
-    FingerTree<E, Node<E, T>> emptyDeep = empty();
+  static <E, T extends Container<E>> FingerTree<E, T> small(Measured<E, ?> measured, T[] contents) {
+    FingerTree<E, Node<E, T>> emptyDeep = empty(measured);
     switch (contents.length) {
       case 0:
-        return empty();
+        return empty(measured);
       case 1:
-        return single(contents[0]);
+        return single(measured, contents[0]);
       case 2:
       case 3:
       case 4:
@@ -63,18 +94,56 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
         int right = contents.length >> 1;
         int left = contents.length - right;
         return deep(
-            new Digit<E, T>(Arrays.copyOfRange(contents, 0, left)),
+            measured,
+            new Digit<E, T>(measured, Arrays.copyOfRange(contents, 0, left)),
             emptyDeep,
-            new Digit<E, T>(Arrays.copyOfRange(contents, left, contents.length)));
+            new Digit<E, T>(measured, Arrays.copyOfRange(contents, left, contents.length)));
       default:
         throw new AssertionError();
     }
   }
 
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static FingerTree newEmpty(Measured measured) {
+    return new Empty(measured);
+  }
+
+  final Measured<E, ?> measured;
+
+  private FingerTree(Measured<E, ?> measured) {
+    this.measured = checkNotNull(measured);
+  }
+
   public abstract Optional<T> first();
 
   public abstract Optional<T> last();
 
+  /**
+   * Returns the first leaf of this tree, or null if it is empty. Unlike {@link #first}, this
+   * allocates nothing.
+   */
+  public abstract T firstOrNull();
+
+  public abstract T lastOrNull();
+
+  public boolean isEmpty() {
+    return false;
+  }
+
+  /**
+   * Returns this tree without its first leaf, allocating no views or {@link Optional}s.
+   *
+   * @throws NoSuchElementException if this tree is empty
+   */
+  public abstract FingerTree<E, T> removeFirst();
+
+  /**
+   * Returns this tree without its last leaf, allocating no views or {@link Optional}s.
+   *
+   * @throws NoSuchElementException if this tree is empty
+   */
+  public abstract FingerTree<E, T> removeLast();
+
   public Optional<FingerTree<E, T>> tail() {
     Optional<View<T, FingerTree<E, T>>> viewL = viewL();
     if (viewL.isPresent()) {
@@ -113,16 +182,207 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
     return tree;
   }
 
+  /**
+   * Returns the number of parts this tree is made of: none, its single leaf, or its prefix digit,
+   * middle tree and suffix digit.
+   */
+  abstract int partCount();
+
+  abstract Container<E> part(int i);
+
+  /**
+   * Returns the bits of element {@code i} of {@code tree}, read straight from the leaf holding it
+   * so that no element is boxed and nothing is allocated. Descends through the parts of trees,
+   * digits and nodes alike, without searching by any measure.
+   */
+  static <E, T extends Container<E> & PrimitiveLeaf> long bitsAt(FingerTree<E, T> tree, int i) {
+    checkElementIndex(i, tree.length());
+    Container<E> container = tree;
+    while (!LeafIterator.isLeaf(container)) {
+      for (int j = 0;; j++) {
+        Container<E> part = LeafIterator.part(container, j);
+        int len = part.length();
+        if (i < len) {
+          container = part;
+          break;
+        }
+        i -= len;
+      }
+    }
+    return ((PrimitiveLeaf) container).bitsAt(i);
+  }
+
+  /**
+   * Like {@link #bitsAt(FingerTree, int)}, but finds element {@code i} by {@code by}, which must
+   * count elements as {@code long}s and be the measure {@code tree} was built with. This lets trees
+   * of more than {@link Integer#MAX_VALUE} elements, whose {@link #length} overflows, be indexed.
+   */
+  static <E, T extends Container<E> & PrimitiveLeaf> long bitsAt(
+      FingerTree<E, T> tree,
+      Measured<E, Long> by,
+      long i) {
+    Container<E> container = tree;
+    while (!LeafIterator.isLeaf(container)) {
+      for (int j = 0;; j++) {
+        Container<E> part = LeafIterator.part(container, j);
+        long len = part.measure(by);
+        if (i < len) {
+          container = part;
+          break;
+        }
+        i -= len;
+      }
+    }
+    return ((PrimitiveLeaf) container).bitsAt((int) i);
+  }
+
+  /**
+   * Returns the {@link ContentHash} of the elements of this tree.
+   */
+  int contentHash() {
+    return ContentHash.ofParts(this);
+  }
+
+  /**
+   * Returns the ranges in which {@code b} differs from {@code a}; see {@link TreeDiff}.
+   */
+  static <E> List<Change> diff(FingerTree<E, ?> a, FingerTree<E, ?> b) {
+    return TreeDiff.diff(a, b);
+  }
+
+  /**
+   * Returns an iterator over the leaves of this tree, in order.
+   */
+  @SuppressWarnings("unchecked")
+  Iterator<T> leafIterator() {
+    return (Iterator<T>) (Iterator<?>) new LeafIterator<E>(this, false);
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new TreeIterator<E>(this, false);
+  }
+
+  public Iterator<E> reverseIterator() {
+    return new TreeIterator<E>(this, true);
+  }
+
+  @Override
+  public Spliterator<E> spliterator() {
+    return new TreeSpliterator<E>(this);
+  }
+
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    LeafIterator.forEach(this, checkNotNull(action));
+  }
+
   public abstract FingerTree<E, T> cons(T t);
 
   public abstract FingerTree<E, T> snoc(T t);
 
+  /**
+   * Returns this nonempty tree with its first leaf replaced by {@code t}, without restructuring.
+   */
+  abstract FingerTree<E, T> replaceFirst(T t);
+
+  /**
+   * Returns this nonempty tree with its last leaf replaced by {@code t}, without restructuring.
+   */
+  abstract FingerTree<E, T> replaceLast(T t);
+
   abstract FingerTree<E, T> appendTree(T[] m, FingerTree<E, T> other);
 
+  /**
+   * Replaces the leaf holding one element of a tree, given the leaf and the element's offset
+   * within it. The replacement must have the same length.
+   */
+  interface Adjuster<T> {
+    T adjust(T leaf, int offset);
+  }
+
+  /**
+   * Returns a tree with the leaf holding element {@code i} replaced by {@code adjuster}. Only the
+   * path from the root down to that leaf is copied; every other subtree is shared.
+   */
+  public FingerTree<E, T> adjust(int i, Adjuster<T> adjuster) {
+    checkElementIndex(i, length());
+    return adjustTree(i, checkNotNull(adjuster));
+  }
+
+  abstract FingerTree<E, T> adjustTree(int i, Adjuster<T> adjuster);
+
+  @SuppressWarnings("unchecked")
+  public FingerTree<E, T> concat(FingerTree<E, T> other) {
+    return appendTree((T[]) NO_CONTAINERS, other);
+  }
+
   @SuppressWarnings("rawtypes")
-  private static final FingerTree EMPTY = new FingerTree() {
+  private static final Container[] NO_CONTAINERS = new Container[0];
+
+  /**
+   * Splits this tree at the first element where the accumulated measure {@code by} satisfies
+   * {@code p}, which must be monotone. {@code by} must be either the measure this tree was built
+   * with or {@link Measured#SIZE}.
+   */
+  public <V> Optional<Split<T, FingerTree<E, T>>> split(
+      Measured<E, V> by,
+      Predicate<? super V> p) {
+    if (isEmpty() || !p.test(measure(by))) {
+      return Optional.absent();
+    }
+    return Optional.of(splitTree(by, p, by.identity()));
+  }
+
+  public Split<T, FingerTree<E, T>> splitAt(final int i) {
+    checkElementIndex(i, length());
+    return splitTree(Measured.<E> size(), acc -> acc > i, 0);
+  }
+
+  abstract <V> Split<T, FingerTree<E, T>> splitTree(
+      Measured<E, V> by,
+      Predicate<? super V> p,
+      V acc);
+
+  /**
+   * Returns the index of the first element where the accumulated measure {@code by} satisfies
+   * {@code p}, or {@code length()} if there is none. Unlike {@link #split}, this allocates no new
+   * tree.
+   */
+  public <V> int find(Measured<E, V> by, Predicate<? super V> p) {
+    if (isEmpty() || !p.test(measure(by))) {
+      return length();
+    }
+    return findTree(by, p, by.identity());
+  }
+
+  abstract <V> int findTree(Measured<E, V> by, Predicate<? super V> p, V acc);
+
+  /**
+   * Passes to {@code visitor}, in order, the elements of every leaf whose measure {@code by}
+   * satisfies {@code p}, skipping every subtree whose cached measure does not; {@code p} must hold
+   * of a combined measure whenever it holds of any part of it. Stops as soon as {@code visitor}
+   * returns false, and returns false if it did.
+   */
+  public <V> boolean visitWhere(
+      Measured<E, V> by,
+      Predicate<? super V> p,
+      Predicate<? super E> visitor) {
+    return visit(this, by, p, visitor);
+  }
+
+  abstract <V> boolean visitTree(
+      Measured<E, V> by,
+      Predicate<? super V> p,
+      Predicate<? super E> visitor);
+
+  private static final class Empty<E, T extends Container<E>> extends FingerTree<E, T> {
+    private Empty(Measured<E, ?> measured) {
+      super(measured);
+    }
+
     @Override
-    public Object index(int i) {
+    public E index(int i) {
       throw new IndexOutOfBoundsException();
     }
 
@@ -132,75 +392,142 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
     }
 
     @Override
-    public Optional viewL() {
+    public <V> V measure(Measured<E, V> measured) {
+      return measured.identity();
+    }
+
+    @Override
+    public Optional<View<T, FingerTree<E, T>>> viewL() {
       return Optional.absent();
     }
 
     @Override
-    public Optional first() {
+    public Optional<T> first() {
       return Optional.absent();
     }
 
     @Override
-    public Optional last() {
+    public T firstOrNull() {
+      return null;
+    }
+
+    @Override
+    FingerTree<E, T> adjustTree(int i, Adjuster<T> adjuster) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public T lastOrNull() {
+      return null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return true;
+    }
+
+    @Override
+    public FingerTree<E, T> removeFirst() {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public FingerTree<E, T> removeLast() {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    public Optional<T> last() {
       return Optional.absent();
     }
 
     @Override
-    public Optional viewR() {
+    public Optional<View<T, FingerTree<E, T>>> viewR() {
       return Optional.absent();
     }
 
     @Override
-    public Optional tail() {
+    public Optional<FingerTree<E, T>> tail() {
       return Optional.absent();
     }
 
     @Override
-    public Optional init() {
+    public Optional<FingerTree<E, T>> init() {
       return Optional.absent();
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public FingerTree cons(Container t) {
-      return FingerTree.single(t);
+    public FingerTree<E, T> cons(T t) {
+      TreeCounters.countCons();
+      return FingerTree.single(measured, t);
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    public FingerTree snoc(Container t) {
-      return FingerTree.single(t);
+    public FingerTree<E, T> snoc(T t) {
+      TreeCounters.countSnoc();
+      return FingerTree.single(measured, t);
+    }
+
+    @Override
+    FingerTree<E, T> replaceFirst(T t) {
+      throw new NoSuchElementException();
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    FingerTree appendTree(Container[] m, FingerTree other) {
+    FingerTree<E, T> replaceLast(T t) {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    FingerTree<E, T> appendTree(T[] m, FingerTree<E, T> other) {
+      TreeCounters.countAppendTree();
       return other.consAll(m);
     }
 
     @Override
-    public Iterator iterator() {
-      return Iterators.emptyIterator();
+    <V> Split<T, FingerTree<E, T>> splitTree(Measured<E, V> by, Predicate<? super V> p, V acc) {
+      throw new NoSuchElementException();
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    FingerTree consAll(Container[] ts) {
-      return small(ts);
+    <V> int findTree(Measured<E, V> by, Predicate<? super V> p, V acc) {
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    <V> boolean visitTree(
+        Measured<E, V> by,
+        Predicate<? super V> p,
+        Predicate<? super E> visitor) {
+      return true;
+    }
+
+    @Override
+    int partCount() {
+      return 0;
     }
 
-    @SuppressWarnings("unchecked")
     @Override
-    FingerTree snocAll(Container[] ts) {
-      return small(ts);
+    Container<E> part(int i) {
+      throw new IndexOutOfBoundsException();
     }
-  };
+
+    @Override
+    FingerTree<E, T> consAll(T[] ts) {
+      return small(measured, ts);
+    }
+
+    @Override
+    FingerTree<E, T> snocAll(T[] ts) {
+      return small(measured, ts);
+    }
+  }
 
   private static final class Single<E, T extends Container<E>> extends FingerTree<E, T> {
     private final T value;
 
-    private Single(T value) {
+    private Single(Measured<E, ?> measured, T value) {
+      super(measured);
       this.value = checkNotNull(value);
     }
 
@@ -214,14 +541,19 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       return value.length();
     }
 
+    @Override
+    public <V> V measure(Measured<E, V> measured) {
+      return value.measure(measured);
+    }
+
     @Override
     public Optional<View<T, FingerTree<E, T>>> viewL() {
-      return Optional.of(View.of(value, FingerTree.<E, T> empty()));
+      return Optional.of(View.of(value, FingerTree.<E, T> empty(measured)));
     }
 
     @Override
     public Optional<View<T, FingerTree<E, T>>> viewR() {
-      return Optional.of(View.of(value, FingerTree.<E, T> empty()));
+      return Optional.of(View.of(value, FingerTree.<E, T> empty(measured)));
     }
 
     @Override
@@ -229,6 +561,31 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       return Optional.of(value);
     }
 
+    @Override
+    public T firstOrNull() {
+      return value;
+    }
+
+    @Override
+    FingerTree<E, T> adjustTree(int i, Adjuster<T> adjuster) {
+      return single(measured, adjuster.adjust(value, i));
+    }
+
+    @Override
+    public T lastOrNull() {
+      return value;
+    }
+
+    @Override
+    public FingerTree<E, T> removeFirst() {
+      return empty(measured);
+    }
+
+    @Override
+    public FingerTree<E, T> removeLast() {
+      return empty(measured);
+    }
+
     @Override
     public Optional<T> last() {
       return Optional.of(value);
@@ -236,32 +593,80 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
 
     @Override
     public Optional<FingerTree<E, T>> tail() {
-      return Optional.of(FingerTree.<E, T> empty());
+      return Optional.of(FingerTree.<E, T> empty(measured));
     }
 
     @Override
     public Optional<FingerTree<E, T>> init() {
-      return Optional.of(FingerTree.<E, T> empty());
+      return Optional.of(FingerTree.<E, T> empty(measured));
     }
 
     @Override
     public FingerTree<E, T> cons(T t) {
-      return deep(Digit.of(t), FingerTree.<E, Node<E, T>> empty(), Digit.of(value));
+      TreeCounters.countCons();
+      return deep(
+          measured,
+          Digit.of(measured, t),
+          FingerTree.<E, Node<E, T>> empty(measured),
+          Digit.of(measured, value));
     }
 
     @Override
     public FingerTree<E, T> snoc(T t) {
-      return deep(Digit.of(value), FingerTree.<E, Node<E, T>> empty(), Digit.of(t));
+      TreeCounters.countSnoc();
+      return deep(
+          measured,
+          Digit.of(measured, value),
+          FingerTree.<E, Node<E, T>> empty(measured),
+          Digit.of(measured, t));
+    }
+
+    @Override
+    FingerTree<E, T> replaceFirst(T t) {
+      return single(measured, t);
+    }
+
+    @Override
+    FingerTree<E, T> replaceLast(T t) {
+      return single(measured, t);
     }
 
     @Override
     FingerTree<E, T> appendTree(T[] m, FingerTree<E, T> other) {
+      TreeCounters.countAppendTree();
       return other.consAll(m).cons(value);
     }
 
     @Override
-    public Iterator<E> iterator() {
-      return value.iterator();
+    <V> Split<T, FingerTree<E, T>> splitTree(Measured<E, V> by, Predicate<? super V> p, V acc) {
+      FingerTree<E, T> empty = empty(measured);
+      return Split.of(empty, value, empty);
+    }
+
+    @Override
+    <V> int findTree(Measured<E, V> by, Predicate<? super V> p, V acc) {
+      return findIn(value, by, p, acc);
+    }
+
+    @Override
+    <V> boolean visitTree(
+        Measured<E, V> by,
+        Predicate<? super V> p,
+        Predicate<? super E> visitor) {
+      return visit(value, by, p, visitor);
+    }
+
+    @Override
+    int partCount() {
+      return 1;
+    }
+
+    @Override
+    Container<E> part(int i) {
+      if (i != 0) {
+        throw new IndexOutOfBoundsException();
+      }
+      return value;
     }
 
     @Override
@@ -269,7 +674,7 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       if (ts.length == 0) {
         return this;
       }
-      return small(ObjectArrays.concat(ts, value));
+      return small(measured, ObjectArrays.concat(ts, value));
     }
 
     @Override
@@ -277,25 +682,63 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       if (ts.length == 0) {
         return this;
       }
-      return small(ObjectArrays.concat(value, ts));
+      return small(measured, ObjectArrays.concat(value, ts));
     }
   }
 
   private static final class Deep<E, T extends Container<E>> extends FingerTree<E, T> {
     private final Digit<E, T> pre;
-    private final FingerTree<E, Node<E, T>> mid;
+
+    /**
+     * The middle tree, or a {@link Push} onto it that has not been forced yet; see {@link #mid()}.
+     */
+    private volatile Container<E> mid;
     private final Digit<E, T> suf;
     private final int length;
-
-    private Deep(Digit<E, T> pre, FingerTree<E, Node<E, T>> mid, Digit<E, T> suf, int length) {
+    private final Object measure;
+
+    /**
+     * The cached {@link ContentHash}, or zero if it has not been computed yet.
+     */
+    private int hash;
+
+    private Deep(
+        Measured<E, ?> measured,
+        Digit<E, T> pre,
+        Container<E> mid,
+        Digit<E, T> suf,
+        int length) {
+      super(measured);
       this.pre = checkNotNull(pre);
       this.mid = checkNotNull(mid);
       this.suf = checkNotNull(suf);
       this.length = length;
+      this.measure = measured.cache(pre, mid, suf);
+      TreeCounters.countDeep();
     }
 
-    private Deep(Digit<E, T> pre, FingerTree<E, Node<E, T>> mid, Digit<E, T> suf) {
-      this(pre, mid, suf, pre.length() + mid.length() + suf.length());
+    private Deep(
+        Measured<E, ?> measured,
+        Digit<E, T> pre,
+        Container<E> mid,
+        Digit<E, T> suf) {
+      this(measured, pre, mid, suf, pre.length() + mid.length() + suf.length());
+    }
+
+    /**
+     * Returns the middle tree, forcing a suspended push onto it. The push memoizes its result, so
+     * every version sharing it gets the same middle tree; this version also keeps the result, so
+     * that later calls skip the push altogether.
+     */
+    @SuppressWarnings("unchecked")
+    private FingerTree<E, Node<E, T>> mid() {
+      Container<E> m = mid;
+      if (m instanceof Push) {
+        FingerTree<E, Node<E, T>> forced = ((Push<E, T>) m).force();
+        mid = forced;
+        return forced;
+      }
+      return (FingerTree<E, Node<E, T>>) m;
     }
 
     @Override
@@ -307,7 +750,7 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
         i -= prlen;
       }
       int midlen = length - prlen - suf.length();
-      return (i < midlen) ? mid.index(i) : suf.index(i - midlen);
+      return (i < midlen) ? mid().index(i) : suf.index(i - midlen);
     }
 
     @Override
@@ -315,18 +758,31 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       return length;
     }
 
+    @Override
+    public <V> V measure(Measured<E, V> measured) {
+      return Measured.uncache(measured, measure, length);
+    }
+
     @Override
     public Optional<View<T, FingerTree<E, T>>> viewL() {
-      View<T, Optional<Digit<E, T>>> preViewL = pre.viewL();
+      View<T, Optional<Digit<E, T>>> preViewL = pre.viewL(measured);
       T end = preViewL.getEnd();
-      return Optional.of(View.of(end, deepL(preViewL.getRemainder(), mid, suf)));
+      Optional<Digit<E, T>> rest = preViewL.getRemainder();
+      FingerTree<E, T> remainder = rest.isPresent()
+          ? new Deep<E, T>(measured, rest.get(), mid, suf, length - end.length())
+          : deepL(measured, rest, mid(), suf);
+      return Optional.of(View.of(end, remainder));
     }
 
     @Override
     public Optional<View<T, FingerTree<E, T>>> viewR() {
-      View<T, Optional<Digit<E, T>>> sufViewR = suf.viewR();
+      View<T, Optional<Digit<E, T>>> sufViewR = suf.viewR(measured);
       T end = sufViewR.getEnd();
-      return Optional.of(View.of(end, deepR(pre, mid, sufViewR.getRemainder())));
+      Optional<Digit<E, T>> rest = sufViewR.getRemainder();
+      FingerTree<E, T> remainder = rest.isPresent()
+          ? new Deep<E, T>(measured, pre, mid, rest.get(), length - end.length())
+          : deepR(measured, pre, mid(), rest);
+      return Optional.of(View.of(end, remainder));
     }
 
     @Override
@@ -334,6 +790,61 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       return Optional.of(pre.first());
     }
 
+    @Override
+    public T firstOrNull() {
+      return pre.first();
+    }
+
+    @Override
+    FingerTree<E, T> adjustTree(int i, final Adjuster<T> adjuster) {
+      int prlen = pre.length();
+      if (i < prlen) {
+        return new Deep<E, T>(measured, pre.adjust(measured, i, adjuster), mid, suf, length);
+      }
+      i -= prlen;
+      int midlen = length - prlen - suf.length();
+      if (i < midlen) {
+        FingerTree<E, Node<E, T>> newMid = mid().adjustTree(
+            i,
+            (node, offset) -> node.adjust(measured, offset, adjuster));
+        return new Deep<E, T>(measured, pre, newMid, suf, length);
+      }
+      Digit<E, T> newSuf = suf.adjust(measured, i - midlen, adjuster);
+      return new Deep<E, T>(measured, pre, mid, newSuf, length);
+    }
+
+    @Override
+    public T lastOrNull() {
+      return suf.last();
+    }
+
+    @Override
+    public FingerTree<E, T> removeFirst() {
+      int newLength = length - pre.first().length();
+      if (pre.size() > 1) {
+        return new Deep<E, T>(measured, pre.dropFirst(measured), mid, suf, newLength);
+      }
+      FingerTree<E, Node<E, T>> m = mid();
+      if (m.isEmpty()) {
+        return suf.asFingerTree(measured);
+      }
+      Digit<E, T> newPre = m.firstOrNull().asDigit();
+      return new Deep<E, T>(measured, newPre, m.removeFirst(), suf, newLength);
+    }
+
+    @Override
+    public FingerTree<E, T> removeLast() {
+      int newLength = length - suf.last().length();
+      if (suf.size() > 1) {
+        return new Deep<E, T>(measured, pre, mid, suf.dropLast(measured), newLength);
+      }
+      FingerTree<E, Node<E, T>> m = mid();
+      if (m.isEmpty()) {
+        return pre.asFingerTree(measured);
+      }
+      return new Deep<E, T>(measured, pre, m.removeLast(), m.lastOrNull().asDigit(), newLength);
+    }
+
     @Override
     public Optional<T> last() {
       return Optional.of(suf.last());
@@ -341,18 +852,35 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
 
     @Override
     public FingerTree<E, T> cons(T t) {
-      View<Digit<E, T>, Optional<Node<E, T>>> preCons = pre.cons(t);
+      TreeCounters.countCons();
+      View<Digit<E, T>, Optional<Node<E, T>>> preCons = pre.cons(measured, t);
       Optional<Node<E, T>> remainder = preCons.getRemainder();
-      FingerTree<E, Node<E, T>> newMid = remainder.isPresent() ? mid.cons(remainder.get()) : mid;
-      return new Deep<E, T>(preCons.getEnd(), newMid, suf, length + t.length());
+      Container<E> newMid =
+          remainder.isPresent() ? new Push<E, T>(mid(), remainder.get(), true) : mid;
+      return new Deep<E, T>(measured, preCons.getEnd(), newMid, suf, length + t.length());
     }
 
     @Override
     public FingerTree<E, T> snoc(T t) {
-      View<Digit<E, T>, Optional<Node<E, T>>> sufSnoc = suf.snoc(t);
+      TreeCounters.countSnoc();
+      View<Digit<E, T>, Optional<Node<E, T>>> sufSnoc = suf.snoc(measured, t);
       Optional<Node<E, T>> remainder = sufSnoc.getRemainder();
-      FingerTree<E, Node<E, T>> newMid = remainder.isPresent() ? mid.snoc(remainder.get()) : mid;
-      return new Deep<E, T>(pre, newMid, sufSnoc.getEnd());
+      Container<E> newMid =
+          remainder.isPresent() ? new Push<E, T>(mid(), remainder.get(), false) : mid;
+      return new Deep<E, T>(measured, pre, newMid, sufSnoc.getEnd(), length + t.length());
+    }
+
+    @Override
+    FingerTree<E, T> replaceFirst(T t) {
+      int newLength = length - pre.first().length() + t.length();
+      return new Deep<E, T>(measured, pre.replace(measured, 0, t), mid, suf, newLength);
+    }
+
+    @Override
+    FingerTree<E, T> replaceLast(T t) {
+      int newLength = length - suf.last().length() + t.length();
+      Digit<E, T> newSuf = suf.replace(measured, suf.size() - 1, t);
+      return new Deep<E, T>(measured, pre, mid, newSuf, newLength);
     }
 
     @Override
@@ -360,8 +888,8 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       if (ts.length == 0) {
         return this;
       }
-      View<Digit<E, T>, Node<E, T>[]> preCons = pre.cons(new Digit<E, T>(ts));
-      return deep(preCons.getEnd(), mid.consAll(preCons.getRemainder()), suf);
+      View<Digit<E, T>, Node<E, T>[]> preCons = pre.cons(measured, new Digit<E, T>(measured, ts));
+      return deep(measured, preCons.getEnd(), mid().consAll(preCons.getRemainder()), suf);
     }
 
     @Override
@@ -369,61 +897,270 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
       if (ts.length == 0) {
         return this;
       }
-      View<Digit<E, T>, Node<E, T>[]> sufSnoc = suf.snoc(new Digit<E, T>(ts));
-      return deep(pre, mid.snocAll(sufSnoc.getRemainder()), sufSnoc.getEnd());
+      View<Digit<E, T>, Node<E, T>[]> sufSnoc = suf.snoc(measured, new Digit<E, T>(measured, ts));
+      return deep(measured, pre, mid().snocAll(sufSnoc.getRemainder()), sufSnoc.getEnd());
     }
 
     @Override
     FingerTree<E, T> appendTree(T[] m, FingerTree<E, T> other) {
-      if (other == EMPTY) {
+      TreeCounters.countAppendTree();
+      if (other instanceof Empty) {
         return snocAll(m);
       } else if (other instanceof Single) {
         Single<E, T> s = (Single<E, T>) other;
         return snocAll(m).snoc(s.value);
       }
       Deep<E, T> deep = (Deep<E, T>) other;
-      return deep(this.pre, addDigits(this.mid, this.suf, m, deep.pre, deep.mid), deep.suf);
+      return deep(
+          measured,
+          this.pre,
+          addDigits(measured, mid(), suf, m, deep.pre, deep.mid()),
+          deep.suf);
+    }
+
+    @Override
+    <V> Split<T, FingerTree<E, T>> splitTree(Measured<E, V> by, Predicate<? super V> p, V acc) {
+      V accPre = by.combine(acc, pre.measure(by));
+      if (p.test(accPre)) {
+        Split<T, Optional<Digit<E, T>>> split = pre.split(measured, by, p, acc);
+        return Split.of(
+            toTree(measured, split.getLeft()),
+            split.getPivot(),
+            deepL(measured, split.getRight(), mid(), suf));
+      }
+      V accMid = by.combine(accPre, mid.measure(by));
+      if (p.test(accMid)) {
+        Split<Node<E, T>, FingerTree<E, Node<E, T>>> midSplit = mid().splitTree(by, p, accPre);
+        FingerTree<E, Node<E, T>> midLeft = midSplit.getLeft();
+        Split<T, Optional<Digit<E, T>>> split = midSplit.getPivot().asDigit()
+            .split(measured, by, p, by.combine(accPre, midLeft.measure(by)));
+        return Split.of(
+            deepR(measured, pre, midLeft, split.getLeft()),
+            split.getPivot(),
+            deepL(measured, split.getRight(), midSplit.getRight(), suf));
+      }
+      Split<T, Optional<Digit<E, T>>> split = suf.split(measured, by, p, accMid);
+      return Split.of(
+          deepR(measured, pre, mid(), split.getLeft()),
+          split.getPivot(),
+          toTree(measured, split.getRight()));
+    }
+
+    @Override
+    <V> int findTree(Measured<E, V> by, Predicate<? super V> p, V acc) {
+      V accPre = by.combine(acc, pre.measure(by));
+      if (p.test(accPre)) {
+        return findIn(pre, by, p, acc);
+      }
+      int prlen = pre.length();
+      V accMid = by.combine(accPre, mid.measure(by));
+      if (p.test(accMid)) {
+        return prlen + mid().findTree(by, p, accPre);
+      }
+      return length - suf.length() + findIn(suf, by, p, accMid);
+    }
+
+    @Override
+    <V> boolean visitTree(
+        Measured<E, V> by,
+        Predicate<? super V> p,
+        Predicate<? super E> visitor) {
+      return visit(pre, by, p, visitor)
+          && visit(mid(), by, p, visitor)
+          && visit(suf, by, p, visitor);
+    }
+
+    @Override
+    int partCount() {
+      return 3;
+    }
+
+    @Override
+    int contentHash() {
+      int h = hash;
+      if (h == 0) {
+        h = ContentHash.ofParts(this);
+        hash = h;
+      }
+      return h;
+    }
+
+    @Override
+    Container<E> part(int i) {
+      switch (i) {
+        case 0:
+          return pre;
+        case 1:
+          return mid();
+        case 2:
+          return suf;
+        default:
+          throw new IndexOutOfBoundsException();
+      }
+    }
+  }
+
+  /**
+   * A suspended {@code cons} or {@code snoc} of a node onto a middle tree, as left behind by a
+   * digit overflow. Its length and annotation are known without forcing it, so the deep tree above
+   * can cache its own; the push itself is only performed when something descends into the middle.
+   * This keeps cons and snoc amortized constant time even when an old version with a full digit is
+   * reused over and over.
+   *
+   * <p>A push is shared by every version derived from the deep tree holding it without touching
+   * the middle, such as those made by {@code replaceFirst} or by a {@code cons} that does not
+   * overflow. It is forced at most once, so those versions also share the forced middle tree.
+   */
+  private static final class Push<E, T extends Container<E>> implements Container<E> {
+    private final FingerTree<E, Node<E, T>> tree;
+    private final Node<E, T> node;
+    private final boolean front;
+    private volatile FingerTree<E, Node<E, T>> forced;
+
+    private Push(FingerTree<E, Node<E, T>> tree, Node<E, T> node, boolean front) {
+      this.tree = tree;
+      this.node = node;
+      this.front = front;
+    }
+
+    FingerTree<E, Node<E, T>> force() {
+      FingerTree<E, Node<E, T>> result = forced;
+      if (result == null) {
+        synchronized (this) {
+          result = forced;
+          if (result == null) {
+            TreeCounters.countPush();
+            result = front ? tree.cons(node) : tree.snoc(node);
+            forced = result;
+          }
+        }
+      }
+      return result;
+    }
+
+    @Override
+    public E index(int i) {
+      return force().index(i);
+    }
+
+    @Override
+    public int length() {
+      return tree.length() + node.length();
+    }
+
+    @Override
+    public <V> V measure(Measured<E, V> measured) {
+      V treeMeasure = tree.measure(measured);
+      V nodeMeasure = node.measure(measured);
+      return front
+          ? measured.combine(nodeMeasure, treeMeasure)
+          : measured.combine(treeMeasure, nodeMeasure);
     }
 
     @Override
     public Iterator<E> iterator() {
-      return Iterables.concat(pre, mid, suf).iterator();
+      return force().iterator();
+    }
+  }
+
+  /**
+   * Returns the index within {@code container} of the first element at which the accumulated
+   * measure satisfies {@code p}, descending through digits and nodes to the leaf.
+   */
+  private static <E, V> int findIn(
+      Container<E> container,
+      Measured<E, V> by,
+      Predicate<? super V> p,
+      V acc) {
+    int index = 0;
+    while (container instanceof DeepContainer) {
+      DeepContainer<E, ?> deep = (DeepContainer<E, ?>) container;
+      int i = 0;
+      for (; i < deep.size() - 1; i++) {
+        Container<E> child = deep.get(i);
+        V next = by.combine(acc, child.measure(by));
+        if (p.test(next)) {
+          break;
+        }
+        acc = next;
+        index += child.length();
+      }
+      container = deep.get(i);
     }
+    return index;
   }
 
-  private static <E, T extends Container<E>> FingerTree<E, T> deepL(
+  private static <E, V> boolean visit(
+      Container<E> container,
+      Measured<E, V> by,
+      Predicate<? super V> p,
+      Predicate<? super E> visitor) {
+    if (!p.test(container.measure(by))) {
+      return true;
+    } else if (container instanceof FingerTree) {
+      return ((FingerTree<E, ?>) container).visitTree(by, p, visitor);
+    } else if (container instanceof DeepContainer) {
+      DeepContainer<E, ?> deep = (DeepContainer<E, ?>) container;
+      for (int i = 0; i < deep.size(); i++) {
+        if (!visit(deep.get(i), by, p, visitor)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    for (E e : container) {
+      if (!visitor.test(e)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static <E, T extends Container<E>> FingerTree<E, T> toTree(
+      Measured<E, ?> measured,
+      Optional<Digit<E, T>> digit) {
+    if (digit.isPresent()) {
+      return digit.get().asFingerTree(measured);
+    }
+    return FingerTree.<E, T> empty(measured);
+  }
+
+  static <E, T extends Container<E>> FingerTree<E, T> deepL(
+      Measured<E, ?> measured,
       Optional<Digit<E, T>> pre,
       FingerTree<E, Node<E, T>> mid,
       Digit<E, T> suf) {
     if (pre.isPresent()) {
-      return deep(pre.get(), mid, suf);
+      return deep(measured, pre.get(), mid, suf);
     }
     Optional<View<Node<E, T>, FingerTree<E, Node<E, T>>>> midView = mid.viewL();
     if (midView.isPresent()) {
       View<Node<E, T>, FingerTree<E, Node<E, T>>> theMidView = midView.get();
-      return deep(theMidView.getEnd().asDigit(), theMidView.getRemainder(), suf);
+      return deep(measured, theMidView.getEnd().asDigit(), theMidView.getRemainder(), suf);
     } else {
-      return suf.asFingerTree();
+      return suf.asFingerTree(measured);
     }
   }
 
-  private static <E, T extends Container<E>> FingerTree<E, T> deepR(
+  static <E, T extends Container<E>> FingerTree<E, T> deepR(
+      Measured<E, ?> measured,
       Digit<E, T> pre,
       FingerTree<E, Node<E, T>> mid,
       Optional<Digit<E, T>> suf) {
     if (suf.isPresent()) {
-      return deep(pre, mid, suf.get());
+      return deep(measured, pre, mid, suf.get());
     }
     Optional<View<Node<E, T>, FingerTree<E, Node<E, T>>>> midView = mid.viewR();
     if (midView.isPresent()) {
       View<Node<E, T>, FingerTree<E, Node<E, T>>> theMidView = midView.get();
-      return deep(pre, theMidView.getRemainder(), theMidView.getEnd().asDigit());
+      return deep(measured, pre, theMidView.getRemainder(), theMidView.getEnd().asDigit());
     } else {
-      return pre.asFingerTree();
+      return pre.asFingerTree(measured);
     }
   }
 
   private static <E, T extends Container<E>> FingerTree<E, Node<E, T>> addDigits(
+      Measured<E, ?> measured,
       FingerTree<E, Node<E, T>> m1,
       Digit<E, T> d1,
       T[] mid,
@@ -440,38 +1177,44 @@ abstract class FingerTree<E, T extends Container<E>> implements Container<E> {
     System.arraycopy(d2.contents, 0, tmp, p, d2.size());
     p += d2.size();
     // Each of d1 and d2 are at least 1, so p >= 2.
-    return m1.appendTree(FingerTree.<E, T> groupIntoNodes(Arrays.asList(tmp).subList(0, p)), m2);
+    return m1.appendTree(
+        FingerTree.<E, T> groupIntoNodes(measured, tmp, 0, p),
+        m2);
   }
 
+  /**
+   * Groups {@code contents[from, to)}, at least two items, into nodes of three, using nodes of two
+   * at the ends when the count is not a multiple of three.
+   */
   @SuppressWarnings("unchecked")
-  private static <E, T extends Container<E>> Node<E, T>[] groupIntoNodes(List<T> contents) {
-    int length = contents.size();
+  private static <E, T extends Container<E>> Node<E, T>[] groupIntoNodes(
+      Measured<E, ?> measured,
+      T[] contents,
+      int from,
+      int to) {
+    int length = to - from;
     assert length >= 2;
-    Node<E, T>[] nodes;
+    Node<E, T>[] nodes = new Node[(length + 2) / 3];
+    int i = from;
+    int j = 0;
+    int end = to;
     switch (length % 3) {
-      case 0:
-        nodes = new Node[length / 3];
-        for (int i = 0, j = 0; j < nodes.length; i += 3, j++) {
-          nodes[j] = Node.of(contents.get(i), contents.get(i + 1), contents.get(i + 2));
-        }
-        return nodes;
       case 1:
-        nodes = new Node[(length - 4) / 3 + 2];
-        nodes[0] = Node.of(contents.get(0), contents.get(1));
-        nodes[nodes.length - 1] = Node.of(contents.get(length - 2), contents.get(length - 1));
-        for (int i = 2, j = 1; j < nodes.length - 1; i += 3, j++) {
-          nodes[j] = Node.of(contents.get(i), contents.get(i + 1), contents.get(i + 2));
-        }
-        return nodes;
+        nodes[j++] = Node.of(measured, contents[i], contents[i + 1]);
+        i += 2;
+        nodes[nodes.length - 1] = Node.of(measured, contents[to - 2], contents[to - 1]);
+        end -= 2;
+        break;
       case 2:
-        nodes = new Node[length / 3 + 1];
-        nodes[0] = Node.of(contents.get(0), contents.get(1));
-        for (int i = 2, j = 1; j < nodes.length; i += 3, j++) {
-          nodes[j] = Node.of(contents.get(i), contents.get(i + 1), contents.get(i + 2));
-        }
-        return nodes;
+        nodes[j++] = Node.of(measured, contents[i], contents[i + 1]);
+        i += 2;
+        break;
       default:
-        throw new AssertionError();
+        break;
+    }
+    for (; i < end; i += 3) {
+      nodes[j++] = Node.of(measured, contents[i], contents[i + 1], contents[i + 2]);
     }
+    return nodes;
   }
 }
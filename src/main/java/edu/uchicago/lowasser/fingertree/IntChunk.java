@@ -0,0 +1,49 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A leaf holding up to {@link #CAPACITY} unboxed {@code int} values.
+ */
+final class IntChunk extends PrimitiveChunk<Integer, int[], IntChunk> {
+  public static IntChunk of(int value) {
+    return new IntChunk(new int[] { value });
+  }
+
+  /**
+   * Wraps {@code values}, which must be non-empty and never be modified afterwards.
+   */
+  static IntChunk wrap(int[] values) {
+    checkArgument(values.length >= 1 && values.length <= CAPACITY);
+    return new IntChunk(values);
+  }
+
+  private IntChunk(int[] values) {
+    super(values);
+  }
+
+  @Override
+  public int length() {
+    return values.length;
+  }
+
+  @Override
+  int[] newArray(int length) {
+    return new int[length];
+  }
+
+  @Override
+  IntChunk withValues(int[] values) {
+    return new IntChunk(values);
+  }
+
+  @Override
+  public Integer index(int i) {
+    return values[i];
+  }
+
+  @Override
+  public long bitsAt(int i) {
+    return values[i];
+  }
+}
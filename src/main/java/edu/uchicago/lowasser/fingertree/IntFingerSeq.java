@@ -0,0 +1,83 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable, persistent sequence of {@code int} values; the unboxed counterpart of
+ * {@link FingerSeq}. Values are stored in {@code int[]} chunks at the leaves of the same finger
+ * tree spine, so reads never box and each value costs little more than four bytes.
+ */
+public final class IntFingerSeq
+    extends PrimitiveFingerSeq<Integer, int[], IntChunk, IntFingerSeq> {
+  private static final IntFingerSeq EMPTY =
+      new IntFingerSeq(FingerTree.<Integer, IntChunk> empty());
+
+  public static IntFingerSeq empty() {
+    return EMPTY;
+  }
+
+  public static IntFingerSeq of(int... values) {
+    return copyOf(values);
+  }
+
+  public static IntFingerSeq copyOf(int[] values) {
+    return EMPTY.wrap(build(values, values.length, int[]::new, IntChunk::wrap));
+  }
+
+  private IntFingerSeq(FingerTree<Integer, IntChunk> tree) {
+    super(tree);
+  }
+
+  @Override
+  IntFingerSeq wrap(FingerTree<Integer, IntChunk> tree) {
+    return tree.isEmpty() ? EMPTY : new IntFingerSeq(tree);
+  }
+
+  public IntFingerSeq prepend(int value) {
+    return prepend(IntChunk.of(value));
+  }
+
+  public IntFingerSeq append(int value) {
+    return append(IntChunk.of(value));
+  }
+
+  public int getInt(int index) {
+    return (int) bitsAt(index);
+  }
+
+  public int first() {
+    return (int) firstBits();
+  }
+
+  public int last() {
+    return (int) lastBits();
+  }
+
+  public int[] toArray() {
+    int[] result = new int[size()];
+    copyTo(result);
+    return result;
+  }
+
+  @Override
+  public PrimitiveIterator.OfInt iterator() {
+    final BitsIterator<IntChunk> bits = bitsIterator();
+    return new PrimitiveIterator.OfInt() {
+      @Override
+      public boolean hasNext() {
+        return bits.hasNext();
+      }
+
+      @Override
+      public int nextInt() {
+        return (int) bits.nextBits();
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
@@ -0,0 +1,94 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * Iterates over the leaves beneath a tree, digit or node, forwards or backwards. Leaves are the
+ * containers that are neither trees nor digits nor nodes, such as {@link Elem} and {@link Chunk}.
+ * The spine is walked with an explicit stack of containers and cursors, so advancing allocates
+ * nothing beyond the occasional growth of the stack.
+ */
+final class LeafIterator<E> extends AbstractIterator<Container<E>> {
+  private static final int INITIAL_DEPTH = 16;
+
+  static boolean isLeaf(Container<?> container) {
+    return !(container instanceof FingerTree) && !(container instanceof DeepContainer);
+  }
+
+  static int partCount(Container<?> container) {
+    if (container instanceof FingerTree) {
+      return ((FingerTree<?, ?>) container).partCount();
+    }
+    return ((DeepContainer<?, ?>) container).size();
+  }
+
+  static <E> Container<E> part(Container<E> container, int i) {
+    if (container instanceof FingerTree) {
+      return ((FingerTree<E, ?>) container).part(i);
+    }
+    return ((DeepContainer<E, ?>) container).get(i);
+  }
+
+  /**
+   * Applies {@code action} to every element beneath {@code container}, in order, by recursion
+   * rather than through iterators.
+   */
+  static <E> void forEach(Container<E> container, Consumer<? super E> action) {
+    if (isLeaf(container)) {
+      for (int i = 0; i < container.length(); i++) {
+        action.accept(container.index(i));
+      }
+    } else {
+      for (int i = 0; i < partCount(container); i++) {
+        forEach(part(container, i), action);
+      }
+    }
+  }
+
+  private final boolean reverse;
+  private Container<E>[] stack;
+  private int[] cursors;
+  private int depth;
+
+  @SuppressWarnings("unchecked")
+  LeafIterator(Container<E> root, boolean reverse) {
+    this.reverse = reverse;
+    this.stack = new Container[INITIAL_DEPTH];
+    this.cursors = new int[INITIAL_DEPTH];
+    push(root);
+  }
+
+  private void push(Container<E> container) {
+    if (depth == stack.length) {
+      stack = Arrays.copyOf(stack, depth * 2);
+      cursors = Arrays.copyOf(cursors, depth * 2);
+    }
+    stack[depth] = container;
+    cursors[depth] = 0;
+    depth++;
+  }
+
+  @Override
+  protected Container<E> computeNext() {
+    while (depth > 0) {
+      Container<E> top = stack[depth - 1];
+      int count = partCount(top);
+      int cursor = cursors[depth - 1];
+      if (cursor == count) {
+        stack[--depth] = null;
+        continue;
+      }
+      cursors[depth - 1] = cursor + 1;
+      Container<E> child = part(top, reverse ? count - 1 - cursor : cursor);
+      if (isLeaf(child)) {
+        return child;
+      } else {
+        push(child);
+      }
+    }
+    return endOfData();
+  }
+}
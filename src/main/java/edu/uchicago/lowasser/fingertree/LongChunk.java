@@ -0,0 +1,49 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A leaf holding up to {@link #CAPACITY} unboxed {@code long} values.
+ */
+final class LongChunk extends PrimitiveChunk<Long, long[], LongChunk> {
+  public static LongChunk of(long value) {
+    return new LongChunk(new long[] { value });
+  }
+
+  /**
+   * Wraps {@code values}, which must be non-empty and never be modified afterwards.
+   */
+  static LongChunk wrap(long[] values) {
+    checkArgument(values.length >= 1 && values.length <= CAPACITY);
+    return new LongChunk(values);
+  }
+
+  private LongChunk(long[] values) {
+    super(values);
+  }
+
+  @Override
+  public int length() {
+    return values.length;
+  }
+
+  @Override
+  long[] newArray(int length) {
+    return new long[length];
+  }
+
+  @Override
+  LongChunk withValues(long[] values) {
+    return new LongChunk(values);
+  }
+
+  @Override
+  public Long index(int i) {
+    return values[i];
+  }
+
+  @Override
+  public long bitsAt(int i) {
+    return values[i];
+  }
+}
@@ -0,0 +1,83 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+ * An immutable, persistent sequence of {@code long} values; the unboxed counterpart of
+ * {@link FingerSeq}. Values are stored in {@code long[]} chunks at the leaves of the same finger
+ * tree spine, so reads never box and each value costs little more than eight bytes.
+ */
+public final class LongFingerSeq
+    extends PrimitiveFingerSeq<Long, long[], LongChunk, LongFingerSeq> {
+  private static final LongFingerSeq EMPTY =
+      new LongFingerSeq(FingerTree.<Long, LongChunk> empty());
+
+  public static LongFingerSeq empty() {
+    return EMPTY;
+  }
+
+  public static LongFingerSeq of(long... values) {
+    return copyOf(values);
+  }
+
+  public static LongFingerSeq copyOf(long[] values) {
+    return EMPTY.wrap(build(values, values.length, long[]::new, LongChunk::wrap));
+  }
+
+  private LongFingerSeq(FingerTree<Long, LongChunk> tree) {
+    super(tree);
+  }
+
+  @Override
+  LongFingerSeq wrap(FingerTree<Long, LongChunk> tree) {
+    return tree.isEmpty() ? EMPTY : new LongFingerSeq(tree);
+  }
+
+  public LongFingerSeq prepend(long value) {
+    return prepend(LongChunk.of(value));
+  }
+
+  public LongFingerSeq append(long value) {
+    return append(LongChunk.of(value));
+  }
+
+  public long getLong(int index) {
+    return bitsAt(index);
+  }
+
+  public long first() {
+    return firstBits();
+  }
+
+  public long last() {
+    return lastBits();
+  }
+
+  public long[] toArray() {
+    long[] result = new long[size()];
+    copyTo(result);
+    return result;
+  }
+
+  @Override
+  public PrimitiveIterator.OfLong iterator() {
+    final BitsIterator<LongChunk> bits = bitsIterator();
+    return new PrimitiveIterator.OfLong() {
+      @Override
+      public boolean hasNext() {
+        return bits.hasNext();
+      }
+
+      @Override
+      public long nextLong() {
+        return bits.nextBits();
+      }
+    };
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(toArray());
+  }
+}
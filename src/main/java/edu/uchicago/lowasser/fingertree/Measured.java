@@ -0,0 +1,74 @@
+package edu.uchicago.lowasser.fingertree;
+
+/**
+ * A monoid of annotations over elements of type {@code E}: an identity, an associative combining
+ * operation, and the annotation of a single element. Every {@link Node}, {@link Digit} and deep
+ * {@link FingerTree} caches the combined annotation of its contents, which is what makes searches
+ * and splits on the annotation logarithmic.
+ *
+ * <p>{@link #SIZE} is special-cased: containers built with it cache nothing beyond the lengths they
+ * already track, and any container answers {@code measure(SIZE)} from its length.
+ */
+abstract class Measured<E, V> {
+  static final Measured<Object, Integer> SIZE = new Measured<Object, Integer>() {
+    @Override
+    public Integer identity() {
+      return 0;
+    }
+
+    @Override
+    public Integer combine(Integer left, Integer right) {
+      return left + right;
+    }
+
+    @Override
+    public Integer measure(Object element) {
+      return 1;
+    }
+  };
+
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  static <E> Measured<E, Integer> size() {
+    return (Measured) SIZE;
+  }
+
+  @SuppressWarnings("rawtypes")
+  final FingerTree empty = FingerTree.newEmpty(this);
+
+  public abstract V identity();
+
+  public abstract V combine(V left, V right);
+
+  public abstract V measure(E element);
+
+  /**
+   * Returns the annotation to cache for a container with the given contents, or {@code null} if
+   * this is {@link #SIZE}.
+   */
+  final Object cache(Container<E>[] contents) {
+    if (this == SIZE) {
+      return null;
+    }
+    V v = contents[0].measure(this);
+    for (int i = 1; i < contents.length; i++) {
+      v = combine(v, contents[i].measure(this));
+    }
+    return v;
+  }
+
+  final Object cache(Container<E> a, Container<E> b, Container<E> c) {
+    if (this == SIZE) {
+      return null;
+    }
+    return combine(combine(a.measure(this), b.measure(this)), c.measure(this));
+  }
+
+  /**
+   * Returns {@code cached} as an annotation under {@code measured}, which must be either the
+   * measure the container was built with or {@link #SIZE}.
+   */
+  @SuppressWarnings("unchecked")
+  static <V> V uncache(Measured<?, V> measured, Object cached, int length) {
+    return (measured == SIZE) ? (V) Integer.valueOf(length) : (V) cached;
+  }
+}
@@ -7,34 +7,79 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
-import com.google.common.collect.Iterables;
-
-final class Node<E, T extends Container<E>> implements DeepContainer<E, T> {
+/**
+ * A node of two or three items. Nodes built with {@link Measured#SIZE}, by far the most common
+ * measure, have no field for a cached annotation, which would always be null; nodes built with any
+ * other measure are {@link MeasuredNode}s, which add one.
+ */
+class Node<E, T extends Container<E>> implements DeepContainer<E, T> {
   private final T[] contents;
   private final int length;
 
-  public static <E, T extends Container<E>> Node<E, T> of(T a, T b) {
-    return new Node<E, T>(checkNotNull(a), checkNotNull(b));
+  /**
+   * The cached {@link ContentHash}, or zero if it has not been computed yet.
+   */
+  private int hash;
+
+  @SuppressWarnings("unchecked")
+  public static <E, T extends Container<E>> Node<E, T> of(Measured<E, ?> measured, T a, T b) {
+    T[] contents = (T[]) new Container[] { checkNotNull(a), checkNotNull(b) };
+    return create(measured, contents, a.length() + b.length());
   }
 
-  public static <E, T extends Container<E>> Node<E, T> of(T a, T b, T c) {
-    return new Node<E, T>(checkNotNull(a), checkNotNull(b), checkNotNull(c));
+  @SuppressWarnings("unchecked")
+  public static <E, T extends Container<E>> Node<E, T> of(
+      Measured<E, ?> measured,
+      T a,
+      T b,
+      T c) {
+    T[] contents = (T[]) new Container[] { checkNotNull(a), checkNotNull(b), checkNotNull(c) };
+    return create(measured, contents, a.length() + b.length() + c.length());
+  }
+
+  private static <E, T extends Container<E>> Node<E, T> create(
+      Measured<E, ?> measured,
+      T[] contents,
+      int length) {
+    TreeCounters.countNode();
+    if ((Object) measured == Measured.SIZE) {
+      return new Node<E, T>(contents, length);
+    }
+    return new MeasuredNode<E, T>(contents, length, measured.cache(contents));
   }
 
   public List<T> asList() {
     return Collections.unmodifiableList(Arrays.asList(contents));
   }
 
-  @SuppressWarnings("unchecked")
-  private Node(T a, T b) {
-    this.contents = (T[]) new Container[] { a, b };
-    this.length = a.length() + b.length();
+  private Node(T[] contents, int length) {
+    this.contents = contents;
+    this.length = length;
   }
 
-  @SuppressWarnings("unchecked")
-  private Node(T a, T b, T c) {
-    this.contents = (T[]) new Container[] { a, b, c };
-    this.length = a.length() + b.length() + c.length();
+  /**
+   * Returns the annotation cached under the measure this node was built with, or {@code null} for
+   * {@link Measured#SIZE}.
+   */
+  Object cachedMeasure() {
+    return null;
+  }
+
+  /**
+   * Returns this node with the item holding element {@code i} replaced as by
+   * {@link FingerTree#adjust}.
+   */
+  Node<E, T> adjust(Measured<E, ?> measured, int i, FingerTree.Adjuster<T> adjuster) {
+    T[] newContents = contents.clone();
+    for (int j = 0; j < contents.length; j++) {
+      int len = contents[j].length();
+      if (i < len) {
+        newContents[j] = adjuster.adjust(contents[j], i);
+        return create(measured, newContents, length);
+      }
+      i -= len;
+    }
+    throw new IndexOutOfBoundsException();
   }
 
   @Override
@@ -42,6 +87,11 @@ final class Node<E, T extends Container<E>> implements DeepContainer<E, T> {
     return length;
   }
 
+  @Override
+  public <V> V measure(Measured<E, V> measured) {
+    return Measured.uncache(measured, cachedMeasure(), length);
+  }
+
   @Override
   public E index(int i) {
     for (T sub : contents) {
@@ -65,12 +115,40 @@ final class Node<E, T extends Container<E>> implements DeepContainer<E, T> {
     return contents.length;
   }
 
+  /**
+   * Returns the {@link ContentHash} of this node, computing it on first use. As with
+   * {@link String#hashCode}, racing threads compute the same value, so no synchronization is
+   * needed.
+   */
+  int contentHash() {
+    int h = hash;
+    if (h == 0) {
+      h = ContentHash.ofParts(this);
+      hash = h;
+    }
+    return h;
+  }
+
   public Digit<E, T> asDigit() {
-    return new Digit<E, T>(contents);
+    return new Digit<E, T>(contents, cachedMeasure());
   }
 
   @Override
   public Iterator<E> iterator() {
-    return Iterables.concat(contents).iterator();
+    return new TreeIterator<E>(this, false);
+  }
+
+  static final class MeasuredNode<E, T extends Container<E>> extends Node<E, T> {
+    private final Object measure;
+
+    private MeasuredNode(T[] contents, int length, Object measure) {
+      super(contents, length);
+      this.measure = measure;
+    }
+
+    @Override
+    Object cachedMeasure() {
+      return measure;
+    }
   }
 }
@@ -0,0 +1,77 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Iterator;
+
+import com.google.common.collect.AbstractIterator;
+
+/**
+ * A leaf holding up to {@link #CAPACITY} unboxed values in an array of type {@code A}, such as
+ * {@code int[]}; the primitive counterpart of {@link Chunk}. Everything but allocating arrays and
+ * reading single values is shared here, so {@link IntChunk}, {@link LongChunk} and
+ * {@link DoubleChunk} add only those. Lengths come from the subclasses' arrays rather than a field
+ * here, keeping each chunk as small as a bare array reference.
+ */
+abstract class PrimitiveChunk<E, A, C extends PrimitiveChunk<E, A, C>>
+    implements Container<E>, PrimitiveLeaf {
+  static final int CAPACITY = 64;
+
+  /**
+   * The values, which are never modified.
+   */
+  final A values;
+
+  PrimitiveChunk(A values) {
+    this.values = values;
+  }
+
+  abstract A newArray(int length);
+
+  /**
+   * Returns a chunk of this type wrapping {@code values}.
+   */
+  abstract C withValues(A values);
+
+  @Override
+  public final <V> V measure(Measured<E, V> measured) {
+    if ((Object) measured == Measured.SIZE) {
+      return Measured.uncache(measured, null, length());
+    }
+    V v = measured.measure(index(0));
+    for (int i = 1; i < length(); i++) {
+      v = measured.combine(v, measured.measure(index(i)));
+    }
+    return v;
+  }
+
+  public final boolean isFull() {
+    return length() == CAPACITY;
+  }
+
+  /**
+   * Returns a chunk holding the values of this chunk followed by those of {@code other}, whose
+   * lengths must sum to at most {@link #CAPACITY}.
+   */
+  public final C concat(C other) {
+    int length = length();
+    A newValues = newArray(length + other.length());
+    System.arraycopy(values, 0, newValues, 0, length);
+    System.arraycopy(other.values, 0, newValues, length, other.length());
+    return withValues(newValues);
+  }
+
+  final void copyTo(A dest, int offset) {
+    System.arraycopy(values, 0, dest, offset, length());
+  }
+
+  @Override
+  public final Iterator<E> iterator() {
+    return new AbstractIterator<E>() {
+      private int i;
+
+      @Override
+      protected E computeNext() {
+        return (i < length()) ? index(i++) : endOfData();
+      }
+    };
+  }
+}
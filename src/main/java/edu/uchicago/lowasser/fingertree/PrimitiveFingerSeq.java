@@ -0,0 +1,168 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * The logic shared by {@link IntFingerSeq}, {@link LongFingerSeq} and {@link DoubleFingerSeq}:
+ * sequences of unboxed values stored in {@link PrimitiveChunk}s at the leaves of the same finger
+ * tree spine as {@link FingerSeq}. Values are read as the bits of a {@code long} through
+ * {@link FingerTree#bitsAt}, so subclasses only convert those bits and wrap values in chunks.
+ *
+ * <p>The public types are named after {@link FingerSeq}, the sequence they specialize, rather than
+ * after the package-private {@link FingerTree} they are built on, hence {@code IntFingerSeq}
+ * rather than {@code IntFingerTree}.
+ */
+abstract class PrimitiveFingerSeq<
+        E, A, C extends PrimitiveChunk<E, A, C>, S extends PrimitiveFingerSeq<E, A, C, S>>
+    implements Iterable<E> {
+  /**
+   * Returns a tree of full chunks holding copies of the {@code length} values in {@code values}.
+   */
+  @SuppressWarnings("unchecked")
+  static <E, A, C extends PrimitiveChunk<E, A, C>> FingerTree<E, C> build(
+      A values,
+      int length,
+      IntFunction<A> newArray,
+      Function<A, C> wrap) {
+    Object[] chunks =
+        new PrimitiveChunk[(length + PrimitiveChunk.CAPACITY - 1) / PrimitiveChunk.CAPACITY];
+    for (int i = 0; i < chunks.length; i++) {
+      int from = i * PrimitiveChunk.CAPACITY;
+      int to = Math.min(length, from + PrimitiveChunk.CAPACITY);
+      A chunk = newArray.apply(to - from);
+      System.arraycopy(values, from, chunk, 0, to - from);
+      chunks[i] = wrap.apply(chunk);
+    }
+    return FingerTree.fromArray(Measured.<E> size(), (C[]) chunks, 0, chunks.length);
+  }
+
+  final FingerTree<E, C> tree;
+
+  PrimitiveFingerSeq(FingerTree<E, C> tree) {
+    this.tree = tree;
+  }
+
+  /**
+   * Returns a sequence of this type backed by {@code tree}, or the empty one if it is empty.
+   */
+  abstract S wrap(FingerTree<E, C> tree);
+
+  /**
+   * Returns this sequence preceded by the values of {@code chunk}, merging it into the first chunk
+   * if they fit in one.
+   */
+  final S prepend(C chunk) {
+    C first = tree.firstOrNull();
+    if (first != null && first.length() + chunk.length() <= PrimitiveChunk.CAPACITY) {
+      return wrap(tree.replaceFirst(chunk.concat(first)));
+    }
+    return wrap(tree.cons(chunk));
+  }
+
+  /**
+   * Returns this sequence followed by the values of {@code chunk}, merging it into the last chunk
+   * if they fit in one.
+   */
+  final S append(C chunk) {
+    C last = tree.lastOrNull();
+    if (last != null && last.length() + chunk.length() <= PrimitiveChunk.CAPACITY) {
+      return wrap(tree.replaceLast(last.concat(chunk)));
+    }
+    return wrap(tree.snoc(chunk));
+  }
+
+  /**
+   * Concatenates this sequence with {@code other}, merging the chunks where they meet if they fit
+   * in one.
+   */
+  @SuppressWarnings("unchecked")
+  public final S concat(S other) {
+    checkNotNull(other);
+    if (other.isEmpty()) {
+      return (S) this;
+    } else if (isEmpty()) {
+      return other;
+    }
+    C leftEnd = tree.lastOrNull();
+    C rightEnd = other.tree.firstOrNull();
+    if (leftEnd.length() + rightEnd.length() > PrimitiveChunk.CAPACITY) {
+      return wrap(tree.concat(other.tree));
+    }
+    C[] middle = (C[]) new PrimitiveChunk[] { leftEnd.concat(rightEnd) };
+    return wrap(tree.removeLast().appendTree(middle, other.tree.removeFirst()));
+  }
+
+  final long bitsAt(int index) {
+    return FingerTree.bitsAt(tree, index);
+  }
+
+  final long firstBits() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    return tree.firstOrNull().bitsAt(0);
+  }
+
+  final long lastBits() {
+    if (isEmpty()) {
+      throw new NoSuchElementException();
+    }
+    C last = tree.lastOrNull();
+    return last.bitsAt(last.length() - 1);
+  }
+
+  public final int size() {
+    return tree.length();
+  }
+
+  public final boolean isEmpty() {
+    return tree.isEmpty();
+  }
+
+  /**
+   * Copies the values of this sequence into {@code dest}, which must have room for all of them.
+   */
+  final void copyTo(A dest) {
+    int offset = 0;
+    for (Iterator<C> leaves = tree.leafIterator(); leaves.hasNext();) {
+      C chunk = leaves.next();
+      chunk.copyTo(dest, offset);
+      offset += chunk.length();
+    }
+  }
+
+  /**
+   * An iterator over the bits of the values of a sequence, chunk by chunk, for the primitive
+   * iterators of the subclasses to convert.
+   */
+  static final class BitsIterator<C extends PrimitiveChunk<?, ?, C>> {
+    private final Iterator<C> leaves;
+    private C chunk;
+    private int offset;
+
+    BitsIterator(Iterator<C> leaves) {
+      this.leaves = leaves;
+    }
+
+    boolean hasNext() {
+      return (chunk != null && offset < chunk.length()) || leaves.hasNext();
+    }
+
+    long nextBits() {
+      if (chunk == null || offset == chunk.length()) {
+        chunk = leaves.next();
+        offset = 0;
+      }
+      return chunk.bitsAt(offset++);
+    }
+  }
+
+  final BitsIterator<C> bitsIterator() {
+    return new BitsIterator<C>(tree.leafIterator());
+  }
+}
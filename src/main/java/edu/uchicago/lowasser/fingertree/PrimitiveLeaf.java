@@ -0,0 +1,10 @@
+package edu.uchicago.lowasser.fingertree;
+
+/**
+ * A leaf of unboxed values, any of which it can read as the bits of a {@code long}: sign-extended
+ * for integral types and raw for {@code double}s. This lets {@link FingerTree#bitsAt} read an
+ * element of a tree of such leaves without boxing it or allocating.
+ */
+interface PrimitiveLeaf {
+  long bitsAt(int i);
+}
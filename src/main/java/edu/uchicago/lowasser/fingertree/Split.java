@@ -0,0 +1,31 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+final class Split<P, R> {
+  public static <P, R> Split<P, R> of(R left, P pivot, R right) {
+    return new Split<P, R>(left, pivot, right);
+  }
+
+  private final R left;
+  private final P pivot;
+  private final R right;
+
+  private Split(R left, P pivot, R right) {
+    this.left = checkNotNull(left);
+    this.pivot = checkNotNull(pivot);
+    this.right = checkNotNull(right);
+  }
+
+  public R getLeft() {
+    return left;
+  }
+
+  public P getPivot() {
+    return pivot;
+  }
+
+  public R getRight() {
+    return right;
+  }
+}
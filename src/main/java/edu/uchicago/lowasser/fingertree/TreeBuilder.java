@@ -0,0 +1,131 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import com.google.common.base.Optional;
+
+/**
+ * A transient finger tree: items can be added at either end by writing into mutable per-level
+ * buffers owned by this builder, and {@link #build} freezes them into an ordinary persistent tree.
+ *
+ * <p>Level {@code k} holds a front and a back buffer of level-{@code k} items, which are leaves at
+ * level 0 and nodes of level-{@code (k - 1)} items above. When a buffer reaches five items, the
+ * three nearest the middle are packed into a node and pushed onto the same end of level
+ * {@code k + 1}, exactly as {@code cons} and {@code snoc} would, but without copying digits or
+ * allocating views. Building takes time logarithmic in the size of the tree and copies only the
+ * buffers, so the builder can go on being used afterwards.
+ */
+final class TreeBuilder<E, T extends Container<E>> {
+  private static final int BUFFER_SIZE = 5;
+
+  private final Measured<E, ?> measured;
+
+  /**
+   * The front buffers, each holding its items innermost first, so that consing writes at the end.
+   */
+  private Container<E>[][] fronts;
+  private int[] frontSizes;
+  private Container<E>[][] backs;
+  private int[] backSizes;
+  private int levels;
+
+  @SuppressWarnings("unchecked")
+  TreeBuilder(Measured<E, ?> measured) {
+    this.measured = checkNotNull(measured);
+    this.fronts = new Container[4][];
+    this.frontSizes = new int[4];
+    this.backs = new Container[4][];
+    this.backSizes = new int[4];
+  }
+
+  @SuppressWarnings("unchecked")
+  private void ensureLevel(int level) {
+    if (level < levels) {
+      return;
+    } else if (level == fronts.length) {
+      fronts = Arrays.copyOf(fronts, level * 2);
+      frontSizes = Arrays.copyOf(frontSizes, level * 2);
+      backs = Arrays.copyOf(backs, level * 2);
+      backSizes = Arrays.copyOf(backSizes, level * 2);
+    }
+    fronts[level] = new Container[BUFFER_SIZE];
+    backs[level] = new Container[BUFFER_SIZE];
+    levels = level + 1;
+  }
+
+  TreeBuilder<E, T> cons(T t) {
+    push(0, checkNotNull(t), true);
+    return this;
+  }
+
+  TreeBuilder<E, T> snoc(T t) {
+    push(0, checkNotNull(t), false);
+    return this;
+  }
+
+  private void push(int level, Container<E> item, boolean front) {
+    ensureLevel(level);
+    Container<E>[] buffer = front ? fronts[level] : backs[level];
+    int size = front ? frontSizes[level] : backSizes[level];
+    buffer[size++] = item;
+    if (size == BUFFER_SIZE) {
+      Node<E, Container<E>> node = front
+          ? Node.of(measured, buffer[2], buffer[1], buffer[0])
+          : Node.of(measured, buffer[0], buffer[1], buffer[2]);
+      buffer[0] = buffer[3];
+      buffer[1] = buffer[4];
+      buffer[2] = buffer[3] = buffer[4] = null;
+      size = 2;
+      push(level + 1, node, front);
+    }
+    if (front) {
+      frontSizes[level] = size;
+    } else {
+      backSizes[level] = size;
+    }
+  }
+
+  /**
+   * Returns a persistent tree of the items added so far.
+   */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  FingerTree<E, T> build() {
+    if (levels == 0) {
+      return FingerTree.empty(measured);
+    }
+    Measured raw = measured;
+    int top = levels - 1;
+    Container[] topItems = new Container[frontSizes[top] + backSizes[top]];
+    for (int i = 0; i < frontSizes[top]; i++) {
+      topItems[i] = fronts[top][frontSizes[top] - 1 - i];
+    }
+    System.arraycopy(backs[top], 0, topItems, frontSizes[top], backSizes[top]);
+    FingerTree tree = FingerTree.small(raw, topItems);
+    for (int level = top - 1; level >= 0; level--) {
+      Digit pre = null;
+      Digit suf = null;
+      if (frontSizes[level] > 0) {
+        Container[] contents = new Container[frontSizes[level]];
+        for (int i = 0; i < contents.length; i++) {
+          contents[i] = fronts[level][contents.length - 1 - i];
+        }
+        pre = new Digit(raw, contents);
+      }
+      if (backSizes[level] > 0) {
+        suf = new Digit(raw, Arrays.copyOf(backs[level], backSizes[level]));
+      }
+      // Every level below the top has pushed a node up from at least one of its ends, and kept
+      // two items there.
+      if (pre == null) {
+        tree = FingerTree.deepL(raw, Optional.absent(), tree, suf);
+      } else if (suf == null) {
+        tree = FingerTree.deepR(raw, pre, tree, Optional.absent());
+      } else {
+        tree = FingerTree.deep(raw, pre, tree, suf);
+      }
+    }
+    return tree;
+  }
+}
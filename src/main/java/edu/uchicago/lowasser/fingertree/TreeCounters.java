@@ -0,0 +1,141 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide counters of tree operations and allocations, for spotting pathological usage such
+ * as the same version being extended over and over. Counting is off unless the system property
+ * {@value #PROPERTY} is {@code true} when this class is loaded; while it is off, the checks
+ * guarding each counter are constant and compile away.
+ *
+ * <p>The operation counts include the calls the tree makes on itself, so for example a
+ * {@code cons} that overflows a digit counts once at each level it reaches, and the ratio of
+ * {@link #getConsCount} to the number of calls made by the application shows how far overflows
+ * cascade.
+ */
+public final class TreeCounters implements TreeCountersMXBean {
+  public static final String PROPERTY = "edu.uchicago.lowasser.fingertree.counters";
+
+  static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+  private static final TreeCounters INSTANCE = new TreeCounters();
+
+  public static TreeCounters get() {
+    return INSTANCE;
+  }
+
+  private final LongAdder cons = new LongAdder();
+  private final LongAdder snoc = new LongAdder();
+  private final LongAdder appendTree = new LongAdder();
+  private final LongAdder nodes = new LongAdder();
+  private final LongAdder deeps = new LongAdder();
+  private final LongAdder pushes = new LongAdder();
+
+  private TreeCounters() {}
+
+  static void countCons() {
+    if (ENABLED) {
+      INSTANCE.cons.increment();
+    }
+  }
+
+  static void countSnoc() {
+    if (ENABLED) {
+      INSTANCE.snoc.increment();
+    }
+  }
+
+  static void countAppendTree() {
+    if (ENABLED) {
+      INSTANCE.appendTree.increment();
+    }
+  }
+
+  static void countNode() {
+    if (ENABLED) {
+      INSTANCE.nodes.increment();
+    }
+  }
+
+  static void countDeep() {
+    if (ENABLED) {
+      INSTANCE.deeps.increment();
+    }
+  }
+
+  static void countPush() {
+    if (ENABLED) {
+      INSTANCE.pushes.increment();
+    }
+  }
+
+  /**
+   * Registers the counters with the platform MBean server under
+   * {@code edu.uchicago.lowasser.fingertree:type=TreeCounters}, where JConsole, Mission Control or
+   * a JFR recording of MBean attributes can read them, and returns that name.
+   */
+  public static ObjectName registerMBean() throws JMException {
+    ObjectName name = new ObjectName("edu.uchicago.lowasser.fingertree:type=TreeCounters");
+    ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, name);
+    return name;
+  }
+
+  @Override
+  public boolean isEnabled() {
+    return ENABLED;
+  }
+
+  @Override
+  public long getConsCount() {
+    return cons.sum();
+  }
+
+  @Override
+  public long getSnocCount() {
+    return snoc.sum();
+  }
+
+  @Override
+  public long getAppendTreeCount() {
+    return appendTree.sum();
+  }
+
+  @Override
+  public long getNodesAllocated() {
+    return nodes.sum();
+  }
+
+  @Override
+  public long getDeepTreesAllocated() {
+    return deeps.sum();
+  }
+
+  /**
+   * Returns the number of suspended pushes onto middle trees that have been forced.
+   */
+  @Override
+  public long getPushesForced() {
+    return pushes.sum();
+  }
+
+  @Override
+  public void reset() {
+    cons.reset();
+    snoc.reset();
+    appendTree.reset();
+    nodes.reset();
+    deeps.reset();
+    pushes.reset();
+  }
+
+  @Override
+  public String toString() {
+    return "TreeCounters[cons=" + getConsCount() + ", snoc=" + getSnocCount() + ", appendTree="
+        + getAppendTreeCount() + ", nodes=" + getNodesAllocated() + ", deepTrees="
+        + getDeepTreesAllocated() + ", pushesForced=" + getPushesForced() + "]";
+  }
+}
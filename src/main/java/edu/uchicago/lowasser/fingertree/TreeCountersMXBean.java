@@ -0,0 +1,22 @@
+package edu.uchicago.lowasser.fingertree;
+
+/**
+ * The JMX view of {@link TreeCounters}.
+ */
+public interface TreeCountersMXBean {
+  boolean isEnabled();
+
+  long getConsCount();
+
+  long getSnocCount();
+
+  long getAppendTreeCount();
+
+  long getNodesAllocated();
+
+  long getDeepTreesAllocated();
+
+  long getPushesForced();
+
+  void reset();
+}
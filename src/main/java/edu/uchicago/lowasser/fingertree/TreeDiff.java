@@ -0,0 +1,212 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+
+/**
+ * Compares two versions of a tree, skipping every subtree they share by reference, so that the
+ * work done is proportional to the changed region times the depth of the trees rather than to
+ * their size.
+ *
+ * <p>The trees are walked in step from the front. While both walks stand at the same offset,
+ * shared subtrees are skipped, unshared subtrees of equal length are opened, and leaves of equal
+ * length are compared element by element, which finds every change that, like
+ * {@link FingerTree#adjust}, keeps the shape of the tree. Once the shapes diverge, as after an
+ * insertion or deletion, the same walk is repeated from the back, and whatever lies between the
+ * two walks is reported as a single change.
+ */
+final class TreeDiff<E> {
+  static <E> List<Change> diff(Container<E> a, Container<E> b) {
+    return new TreeDiff<E>(a, b).run();
+  }
+
+  private final Deque<Container<E>> as = new ArrayDeque<Container<E>>();
+  private final Deque<Container<E>> bs = new ArrayDeque<Container<E>>();
+  private final Container<E> aRoot;
+  private final Container<E> bRoot;
+  private final int aLength;
+  private final int bLength;
+  private final List<Change> head = Lists.newArrayList();
+  private final Deque<Change> tail = new ArrayDeque<Change>();
+
+  private TreeDiff(Container<E> a, Container<E> b) {
+    this.aRoot = a;
+    this.bRoot = b;
+    this.aLength = a.length();
+    this.bLength = b.length();
+    if (a != b) {
+      push(as, a);
+      push(bs, b);
+    }
+  }
+
+  private static <E> void push(Deque<Container<E>> stack, Container<E> container) {
+    if (container.length() > 0) {
+      stack.push(container);
+    }
+  }
+
+  /**
+   * Replaces the container on top of {@code stack} with its parts, the first part on top if
+   * {@code forward} and the last otherwise.
+   */
+  private static <E> void open(Deque<Container<E>> stack, boolean forward) {
+    Container<E> top = stack.pop();
+    int count = LeafIterator.partCount(top);
+    for (int i = 0; i < count; i++) {
+      push(stack, LeafIterator.part(top, forward ? count - 1 - i : i));
+    }
+  }
+
+  /**
+   * Opens whichever of the two top containers is longer, or the other if that is a leaf. Returns
+   * false if both are leaves of different lengths, where the walk cannot stay in step.
+   */
+  private boolean openLonger(Container<E> x, Container<E> y, boolean forward) {
+    boolean xFirst = x.length() >= y.length();
+    if (!LeafIterator.isLeaf(xFirst ? x : y)) {
+      open(xFirst ? as : bs, forward);
+    } else if (!LeafIterator.isLeaf(xFirst ? y : x)) {
+      open(xFirst ? bs : as, forward);
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Appends {@code change}, merging it into the last change if they touch.
+   */
+  private void add(Change change) {
+    if (change.getOldStart() == change.getOldEnd() && change.getNewStart() == change.getNewEnd()) {
+      return;
+    }
+    Change last = head.isEmpty() ? null : head.get(head.size() - 1);
+    if (last != null && last.getOldEnd() == change.getOldStart()
+        && last.getNewEnd() == change.getNewStart()) {
+      head.set(head.size() - 1, new Change(
+          last.getOldStart(), change.getOldEnd(), last.getNewStart(), change.getNewEnd()));
+    } else {
+      head.add(change);
+    }
+  }
+
+  /**
+   * Prepends {@code change} to the changes found walking backward, merging it into the first of
+   * them if they touch.
+   */
+  private void addFirst(Change change) {
+    Change first = tail.peekFirst();
+    if (first != null && change.getOldEnd() == first.getOldStart()
+        && change.getNewEnd() == first.getNewStart()) {
+      tail.removeFirst();
+      change = new Change(
+          change.getOldStart(), first.getOldEnd(), change.getNewStart(), first.getNewEnd());
+    }
+    tail.addFirst(change);
+  }
+
+  private List<Change> run() {
+    int start = walkForward();
+    if (as.isEmpty() && bs.isEmpty()) {
+      return head;
+    }
+    // Restart from the back, walking no further than where the forward walk stopped.
+    as.clear();
+    bs.clear();
+    int[] ends = walkBackward(start);
+    add(new Change(start, ends[0], start, ends[1]));
+    for (Change change : tail) {
+      add(change);
+    }
+    return head;
+  }
+
+  /**
+   * Walks both trees from the front while they stay in step, and returns the offset at which they
+   * stopped.
+   */
+  private int walkForward() {
+    int pos = 0;
+    while (!as.isEmpty() && !bs.isEmpty()) {
+      Container<E> x = as.peek();
+      Container<E> y = bs.peek();
+      int len = x.length();
+      if (x == y) {
+        as.pop();
+        bs.pop();
+        pos += len;
+      } else if (len == y.length() && LeafIterator.isLeaf(x) && LeafIterator.isLeaf(y)) {
+        as.pop();
+        bs.pop();
+        for (int i = 0; i < len; i++) {
+          if (!Objects.equal(x.index(i), y.index(i))) {
+            add(new Change(pos + i, pos + i + 1, pos + i, pos + i + 1));
+          }
+        }
+        pos += len;
+      } else if (len == y.length() && !LeafIterator.isLeaf(x) && !LeafIterator.isLeaf(y)) {
+        open(as, true);
+        open(bs, true);
+      } else if (!openLonger(x, y, true)) {
+        break;
+      }
+    }
+    return pos;
+  }
+
+  /**
+   * Walks both trees from the back while they stay in step and neither walk passes
+   * {@code start}, and returns the offsets in each tree at which they stopped.
+   */
+  private int[] walkBackward(int start) {
+    int aEnd = aLength;
+    int bEnd = bLength;
+    if (aEnd > start && bEnd > start) {
+      push(as, aRoot);
+      push(bs, bRoot);
+    }
+    while (!as.isEmpty() && !bs.isEmpty()) {
+      Container<E> x = as.peek();
+      Container<E> y = bs.peek();
+      int len = x.length();
+      // Open any container reaching back into what the forward walk covered.
+      if (aEnd - len < start) {
+        if (LeafIterator.isLeaf(x)) {
+          break;
+        }
+        open(as, false);
+      } else if (bEnd - y.length() < start) {
+        if (LeafIterator.isLeaf(y)) {
+          break;
+        }
+        open(bs, false);
+      } else if (x == y) {
+        as.pop();
+        bs.pop();
+        aEnd -= len;
+        bEnd -= len;
+      } else if (len == y.length() && LeafIterator.isLeaf(x) && LeafIterator.isLeaf(y)) {
+        as.pop();
+        bs.pop();
+        aEnd -= len;
+        bEnd -= len;
+        for (int i = len - 1; i >= 0; i--) {
+          if (!Objects.equal(x.index(i), y.index(i))) {
+            addFirst(new Change(aEnd + i, aEnd + i + 1, bEnd + i, bEnd + i + 1));
+          }
+        }
+      } else if (len == y.length() && !LeafIterator.isLeaf(x) && !LeafIterator.isLeaf(y)) {
+        open(as, false);
+        open(bs, false);
+      } else if (!openLonger(x, y, false)) {
+        break;
+      }
+    }
+    return new int[] { aEnd, bEnd };
+  }
+}
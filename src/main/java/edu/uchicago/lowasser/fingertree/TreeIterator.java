@@ -0,0 +1,42 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.NoSuchElementException;
+
+import com.google.common.collect.UnmodifiableIterator;
+
+/**
+ * Iterates over the elements beneath a tree, digit or node, forwards or backwards, reading each
+ * leaf by index as {@link LeafIterator} reaches it.
+ */
+final class TreeIterator<E> extends UnmodifiableIterator<E> {
+  private final LeafIterator<E> leaves;
+  private final boolean reverse;
+  private Container<E> leaf;
+  private int position;
+
+  TreeIterator(Container<E> root, boolean reverse) {
+    this.leaves = new LeafIterator<E>(root, reverse);
+    this.reverse = reverse;
+  }
+
+  @Override
+  public boolean hasNext() {
+    while (leaf == null || position == leaf.length()) {
+      if (!leaves.hasNext()) {
+        return false;
+      }
+      leaf = leaves.next();
+      position = 0;
+    }
+    return true;
+  }
+
+  @Override
+  public E next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    int i = position++;
+    return leaf.index(reverse ? leaf.length() - 1 - i : i);
+  }
+}
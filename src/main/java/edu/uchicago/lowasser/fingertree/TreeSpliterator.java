@@ -0,0 +1,175 @@
+package edu.uchicago.lowasser.fingertree;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over the elements beneath a tree that splits along the tree's own structure: the
+ * pending parts are kept on a stack, front on top, and a split hands the front half of them, by
+ * cached length, to the new spliterator. A lone pending tree, digit or node is opened up into its
+ * parts before splitting, and a lone leaf is split by index range.
+ */
+final class TreeSpliterator<E> implements Spliterator<E> {
+  private static final int INITIAL_DEPTH = 16;
+  private static final int CHARACTERISTICS =
+      SIZED | SUBSIZED | ORDERED | IMMUTABLE | NONNULL;
+
+  private Container<E>[] stack;
+  private int top;
+  private Container<E> leaf;
+  private int leafPosition;
+  private int leafEnd;
+  private long remaining;
+
+  @SuppressWarnings("unchecked")
+  TreeSpliterator(Container<E> root) {
+    this.stack = new Container[INITIAL_DEPTH];
+    this.remaining = root.length();
+    if (remaining > 0) {
+      push(root);
+    }
+  }
+
+  private TreeSpliterator(
+      Container<E>[] stack,
+      int top,
+      Container<E> leaf,
+      int leafPosition,
+      int leafEnd,
+      long remaining) {
+    this.stack = stack;
+    this.top = top;
+    this.leaf = leaf;
+    this.leafPosition = leafPosition;
+    this.leafEnd = leafEnd;
+    this.remaining = remaining;
+  }
+
+  private void push(Container<E> container) {
+    if (top == stack.length) {
+      stack = Arrays.copyOf(stack, top * 2);
+    }
+    stack[top++] = container;
+  }
+
+  private Container<E> pop() {
+    Container<E> container = stack[--top];
+    stack[top] = null;
+    return container;
+  }
+
+  /**
+   * Replaces the container on top of the stack with its nonempty parts, the first on top.
+   */
+  private void open() {
+    Container<E> container = pop();
+    for (int i = LeafIterator.partCount(container) - 1; i >= 0; i--) {
+      Container<E> part = LeafIterator.part(container, i);
+      if (part.length() > 0) {
+        push(part);
+      }
+    }
+  }
+
+  /**
+   * Makes the front leaf current, opening containers as needed. Returns false if nothing is left.
+   */
+  private boolean advanceLeaf() {
+    while (leafPosition == leafEnd) {
+      if (top == 0) {
+        leaf = null;
+        return false;
+      } else if (LeafIterator.isLeaf(stack[top - 1])) {
+        leaf = pop();
+        leafPosition = 0;
+        leafEnd = leaf.length();
+      } else {
+        open();
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super E> action) {
+    checkNotNull(action);
+    if (!advanceLeaf()) {
+      return false;
+    }
+    remaining--;
+    action.accept(leaf.index(leafPosition++));
+    return true;
+  }
+
+  @Override
+  public void forEachRemaining(Consumer<? super E> action) {
+    checkNotNull(action);
+    for (; leafPosition < leafEnd; leafPosition++) {
+      action.accept(leaf.index(leafPosition));
+    }
+    leaf = null;
+    while (top > 0) {
+      LeafIterator.forEach(pop(), action);
+    }
+    remaining = 0;
+  }
+
+  @Override
+  public Spliterator<E> trySplit() {
+    int leafRemaining = leafEnd - leafPosition;
+    while (leafRemaining == 0 && top == 1 && !LeafIterator.isLeaf(stack[0])) {
+      open();
+    }
+    if (leafRemaining == 0 && top == 1) {
+      leaf = pop();
+      leafPosition = 0;
+      leafEnd = leafRemaining = leaf.length();
+    }
+    if (top == 0) {
+      if (leafRemaining < 2) {
+        return null;
+      }
+      int mid = leafPosition + (leafRemaining >>> 1);
+      TreeSpliterator<E> prefix = new TreeSpliterator<E>(
+          emptyStack(), 0, leaf, leafPosition, mid, mid - leafPosition);
+      leafPosition = mid;
+      remaining -= prefix.remaining;
+      return prefix;
+    }
+    // Hand the current leaf and the front parts, about half the elements, to the prefix, keeping
+    // at least the last part here.
+    long half = remaining >>> 1;
+    long prefixSize = leafRemaining;
+    int cut = top;
+    while (cut > 1 && prefixSize < half) {
+      prefixSize += stack[--cut].length();
+    }
+    Container<E>[] prefixStack = Arrays.copyOfRange(stack, cut, top + INITIAL_DEPTH);
+    Arrays.fill(stack, cut, top, null);
+    TreeSpliterator<E> prefix = new TreeSpliterator<E>(
+        prefixStack, top - cut, leaf, leafPosition, leafEnd, prefixSize);
+    top = cut;
+    leaf = null;
+    leafPosition = leafEnd = 0;
+    remaining -= prefixSize;
+    return prefix;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <E> Container<E>[] emptyStack() {
+    return new Container[INITIAL_DEPTH];
+  }
+
+  @Override
+  public long estimateSize() {
+    return remaining;
+  }
+
+  @Override
+  public int characteristics() {
+    return CHARACTERISTICS;
+  }
+}
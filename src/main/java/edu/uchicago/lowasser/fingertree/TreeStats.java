@@ -0,0 +1,260 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * The shape of one version of a tree: how deeply its spine nests, how many nodes of each arity sit
+ * at each level, how full its digits are, and roughly how much heap its structure occupies.
+ * Computing these walks every object in the tree once, so it takes linear time and is meant for
+ * diagnostics rather than for hot paths. It also forces any suspended pushes.
+ *
+ * <p>Heap estimates assume a 64-bit JVM with compressed references, count the tree's own objects
+ * and the arrays in its leaves, and leave out the elements themselves and any buffers that leaves
+ * merely view. Objects reachable more than once are counted once.
+ */
+public final class TreeStats {
+  public static TreeStats of(FingerSeq<?> seq) {
+    return of(seq.tree());
+  }
+
+  static TreeStats of(FingerTree<?, ?> tree) {
+    Walker walker = new Walker(null);
+    walker.visitTree(tree, 0);
+    return new TreeStats(tree.length(), walker);
+  }
+
+  /**
+   * Returns the fraction of the estimated heap of {@code newer} that it shares with
+   * {@code older}, from 0 when they share nothing to 1 when they are the same tree.
+   */
+  public static double sharedFraction(FingerSeq<?> older, FingerSeq<?> newer) {
+    return sharedFraction(older.tree(), newer.tree());
+  }
+
+  static double sharedFraction(FingerTree<?, ?> older, FingerTree<?, ?> newer) {
+    Walker olderWalker = new Walker(null);
+    olderWalker.visitTree(older, 0);
+    Walker newerWalker = new Walker(olderWalker.seen);
+    newerWalker.visitTree(newer, 0);
+    return (newerWalker.bytes == 0) ? 1.0 : (double) newerWalker.sharedBytes / newerWalker.bytes;
+  }
+
+  private static long align(long bytes) {
+    return (bytes + 7) & ~7L;
+  }
+
+  private static long arrayBytes(int length, int elementBytes) {
+    return align(16 + (long) length * elementBytes);
+  }
+
+  private static long leafBytes(Container<?> leaf) {
+    int n = leaf.length();
+    if (leaf instanceof Chunk) {
+      return 16 + arrayBytes(n, 4);
+    } else if (leaf instanceof IntChunk) {
+      return 16 + arrayBytes(n, 4);
+    } else if (leaf instanceof LongChunk || leaf instanceof DoubleChunk) {
+      return 16 + arrayBytes(n, 8);
+    } else if (leaf instanceof CharChunk) {
+      return 24 + arrayBytes(n, 2);
+    } else if (leaf instanceof ByteSlice) {
+      // The slice and its ByteBuffer view, but not the bytes.
+      return 16 + 56;
+    }
+    return 16;
+  }
+
+  /**
+   * Walks a tree level by level. Items at level 0 are leaves, and items at level {@code k + 1} are
+   * nodes of level-{@code k} items.
+   */
+  private static final class Walker {
+    private final Set<Object> seen =
+        Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+    private final Set<Object> shared;
+    private int depth;
+    private int leaves;
+    private int[] twoNodes = new int[8];
+    private int[] threeNodes = new int[8];
+    private final int[] digitSizes = new int[5];
+    private long bytes;
+    private long sharedBytes;
+    private int sharedDepth;
+
+    Walker(Set<Object> shared) {
+      this.shared = shared;
+    }
+
+    /**
+     * Records {@code object} and its estimated size, returning false if it has been seen already.
+     */
+    private boolean enter(Object object, long size) {
+      if (!seen.add(object)) {
+        return false;
+      }
+      bytes += size;
+      if (sharedDepth > 0) {
+        sharedBytes += size;
+      }
+      return true;
+    }
+
+    /**
+     * Returns whether {@code object} is shared with the other tree, in which case everything
+     * beneath it is too, until the caller leaves it.
+     */
+    private boolean enterShared(Object object) {
+      if (shared != null && shared.contains(object)) {
+        sharedDepth++;
+        return true;
+      }
+      return false;
+    }
+
+    void visitTree(FingerTree<?, ?> tree, int level) {
+      boolean isShared = enterShared(tree);
+      int parts = tree.partCount();
+      if (parts > 0) {
+        depth = Math.max(depth, level + 1);
+      }
+      if (enter(tree, (parts == 0) ? 0 : (parts == 1) ? 24 : 40)) {
+        if (parts == 1) {
+          visitItem(tree.part(0), level);
+        } else if (parts == 3) {
+          visitDigit((Digit<?, ?>) tree.part(0), level);
+          visitTree((FingerTree<?, ?>) tree.part(1), level + 1);
+          visitDigit((Digit<?, ?>) tree.part(2), level);
+        }
+      }
+      if (isShared) {
+        sharedDepth--;
+      }
+    }
+
+    private void visitDigit(Digit<?, ?> digit, int level) {
+      boolean isShared = enterShared(digit);
+      if (enter(digit, 24 + arrayBytes(digit.size(), 4))) {
+        digitSizes[digit.size()]++;
+        for (int i = 0; i < digit.size(); i++) {
+          visitItem(digit.get(i), level);
+        }
+      }
+      if (isShared) {
+        sharedDepth--;
+      }
+    }
+
+    private void visitItem(Container<?> item, int level) {
+      boolean isShared = enterShared(item);
+      if (level == 0) {
+        if (enter(item, leafBytes(item))) {
+          leaves++;
+        }
+      } else {
+        Node<?, ?> node = (Node<?, ?>) item;
+        long nodeBytes = (node instanceof Node.MeasuredNode) ? 32 : 24;
+        if (enter(node, nodeBytes + arrayBytes(node.size(), 4))) {
+          if (level >= twoNodes.length) {
+            twoNodes = Arrays.copyOf(twoNodes, level * 2);
+            threeNodes = Arrays.copyOf(threeNodes, level * 2);
+          }
+          if (node.size() == 2) {
+            twoNodes[level]++;
+          } else {
+            threeNodes[level]++;
+          }
+          for (int i = 0; i < node.size(); i++) {
+            visitItem(node.get(i), level - 1);
+          }
+        }
+      }
+      if (isShared) {
+        sharedDepth--;
+      }
+    }
+  }
+
+  private final int length;
+  private final int depth;
+  private final int leaves;
+  private final int[] twoNodes;
+  private final int[] threeNodes;
+  private final int[] digitSizes;
+  private final long estimatedBytes;
+
+  private TreeStats(int length, Walker walker) {
+    this.length = length;
+    this.depth = walker.depth;
+    this.leaves = walker.leaves;
+    this.twoNodes = Arrays.copyOf(walker.twoNodes, Math.max(1, depth));
+    this.threeNodes = Arrays.copyOf(walker.threeNodes, Math.max(1, depth));
+    this.digitSizes = walker.digitSizes;
+    this.estimatedBytes = walker.bytes;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * Returns the number of nested trees along the spine, counting the outermost: zero for an empty
+   * tree, one for a tree with no middle tree.
+   */
+  public int getDepth() {
+    return depth;
+  }
+
+  public int getLeafCount() {
+    return leaves;
+  }
+
+  /**
+   * Returns the number of two-item nodes at {@code level}, where nodes at level 1 hold leaves and
+   * nodes at level {@code k + 1} hold nodes of level {@code k}.
+   */
+  public int getTwoNodeCount(int level) {
+    return (level < twoNodes.length) ? twoNodes[level] : 0;
+  }
+
+  /**
+   * Returns the number of three-item nodes at {@code level}; see {@link #getTwoNodeCount}.
+   */
+  public int getThreeNodeCount(int level) {
+    return (level < threeNodes.length) ? threeNodes[level] : 0;
+  }
+
+  public int getNodeCount(int level) {
+    return getTwoNodeCount(level) + getThreeNodeCount(level);
+  }
+
+  /**
+   * Returns the number of digits, across all levels, holding {@code size} items.
+   */
+  public int getDigitCount(int size) {
+    return (size >= 1 && size <= 4) ? digitSizes[size] : 0;
+  }
+
+  public long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("TreeStats[length=").append(length)
+        .append(", depth=").append(depth)
+        .append(", leaves=").append(leaves)
+        .append(", nodes=[");
+    for (int level = 1; level < depth; level++) {
+      builder.append((level == 1) ? "" : ", ")
+          .append(twoNodes[level]).append('/').append(threeNodes[level]);
+    }
+    return builder.append("], digits=")
+        .append(Arrays.toString(Arrays.copyOfRange(digitSizes, 1, 5)))
+        .append(", estimatedBytes=").append(estimatedBytes)
+        .append(']')
+        .toString();
+  }
+}
@@ -0,0 +1,159 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ByteFingerSeqTests extends TestCase {
+  private static byte[] bytes(Random random, int length) {
+    byte[] bytes = new byte[length];
+    random.nextBytes(bytes);
+    return bytes;
+  }
+
+  public void testOfSharesBuffers() {
+    byte[] backing = { 0, 1, 2, 3, 4, 5, 6, 7 };
+    ByteBuffer heap = ByteBuffer.wrap(backing, 2, 4);
+    ByteBuffer direct = ByteBuffer.allocateDirect(3);
+    direct.put(new byte[] { 8, 9, 10 }).flip();
+    ByteFingerSeq seq = ByteFingerSeq.of(heap, ByteBuffer.allocate(0), direct);
+    assertEquals(7, seq.size());
+    assertTrue(Arrays.equals(new byte[] { 2, 3, 4, 5, 8, 9, 10 }, seq.toArray()));
+    assertEquals(2, heap.position());
+    assertEquals(0, direct.position());
+    backing[3] = 42;
+    assertEquals(42, seq.getByte(1));
+  }
+
+  public void testConcatAndSlice() {
+    Random random = new Random(0);
+    byte[] expected = new byte[0];
+    ByteFingerSeq seq = ByteFingerSeq.empty();
+    for (int i = 0; i < 100; i++) {
+      byte[] piece = bytes(random, random.nextInt(50));
+      int oldLength = expected.length;
+      expected = Arrays.copyOf(expected, oldLength + piece.length);
+      System.arraycopy(piece, 0, expected, oldLength, piece.length);
+      seq = seq.concat(ByteFingerSeq.copyOf(piece));
+    }
+    assertTrue(Arrays.equals(expected, seq.toArray()));
+    for (int i = 0; i < 200; i++) {
+      int from = random.nextInt(expected.length + 1);
+      int to = from + random.nextInt(expected.length - from + 1);
+      ByteFingerSeq slice = seq.slice(from, to);
+      assertTrue(Arrays.equals(Arrays.copyOfRange(expected, from, to), slice.toArray()));
+      for (int j = from; j < to; j++) {
+        assertEquals(expected[j], slice.getByte(j - from));
+      }
+    }
+  }
+
+  public void testWriteTo() throws IOException {
+    Random random = new Random(1);
+    byte[] first = bytes(random, 1000);
+    byte[] second = bytes(random, 3000);
+    ByteFingerSeq seq = ByteFingerSeq.copyOf(first).concat(ByteFingerSeq.copyOf(second));
+    seq = seq.slice(10, seq.size() - 10);
+    File file = File.createTempFile("bytes", null);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        FileChannel channel = raf.getChannel();
+        assertEquals(seq.size(), seq.writeTo(channel));
+        assertEquals(seq.size(), channel.size());
+        ByteBuffer read = ByteBuffer.allocate((int) seq.size());
+        channel.read(read, 0);
+        assertTrue(Arrays.equals(seq.toArray(), read.array()));
+      } finally {
+        raf.close();
+      }
+    } finally {
+      file.delete();
+    }
+    // Writing consumes only the views handed to the channel.
+    assertEquals(3980, seq.toArray().length);
+  }
+
+  public void testMap() throws IOException {
+    Random random = new Random(2);
+    byte[] contents = bytes(random, 10000);
+    File file = File.createTempFile("mapped", null);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      ByteFingerSeq mapped;
+      ByteFingerSeq whole;
+      try {
+        raf.write(contents);
+        mapped = ByteFingerSeq.map(raf.getChannel(), 100, 9000, 1024);
+        whole = ByteFingerSeq.map(raf.getChannel());
+      } finally {
+        raf.close();
+      }
+      // Mappings outlive the channel.
+      assertTrue(Arrays.equals(contents, whole.toArray()));
+      assertEquals(9000, mapped.size());
+      assertEquals(9, mapped.toBuffers().length);
+      assertTrue(Arrays.equals(Arrays.copyOfRange(contents, 100, 9100), mapped.toArray()));
+      for (int i = 0; i < 9000; i += 7) {
+        assertEquals(contents[100 + i], mapped.getByte(i));
+      }
+      int i = 100;
+      for (byte b : mapped) {
+        assertEquals(contents[i++], b);
+      }
+
+      ByteFingerSeq mixed = ByteFingerSeq.copyOf(new byte[] { 1, 2, 3 })
+          .concat(mapped.slice(1000, 3000))
+          .append(ByteBuffer.wrap(new byte[] { 4 }));
+      assertEquals(2004, mixed.size());
+      assertEquals(3, mixed.getByte(2));
+      assertEquals(contents[1100], mixed.getByte(3));
+      assertEquals(contents[3099], mixed.getByte(2002));
+      assertEquals(4, mixed.getByte(2003));
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testMoreThanIntegerMaxValueBytes() {
+    byte[] megabyte = new byte[1 << 20];
+    for (int i = 0; i < megabyte.length; i++) {
+      megabyte[i] = (byte) i;
+    }
+    // Sharing one buffer, this holds exactly 2^32 bytes, so its int length wraps to zero.
+    ByteFingerSeq seq = ByteFingerSeq.of(ByteBuffer.wrap(megabyte));
+    for (int i = 0; i < 12; i++) {
+      seq = seq.concat(seq);
+    }
+    long size = 1L << 32;
+    assertFalse(seq.isEmpty());
+    assertEquals(size, seq.size());
+    assertEquals(4096, seq.toBuffers().length);
+    for (long i : new long[] { 0, Integer.MAX_VALUE, 1L << 31, 3000000007L, size - 1 }) {
+      assertEquals((byte) i, seq.getByte(i));
+    }
+    try {
+      seq.getByte(size);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {}
+
+    long from = (1L << 31) - 1000;
+    ByteFingerSeq slice = seq.slice(from, from + 3000);
+    assertEquals(3000, slice.size());
+    byte[] array = slice.toArray();
+    for (int i = 0; i < array.length; i++) {
+      assertEquals((byte) (from + i), array[i]);
+    }
+    assertEquals(size - from, seq.slice(from, size).size());
+    try {
+      seq.toArray();
+      fail();
+    } catch (IllegalStateException expected) {}
+  }
+}
@@ -0,0 +1,91 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import com.google.common.collect.Lists;
+
+public class ConcurrentFingerDequeTests extends TestCase {
+  private static final int THREADS = 4;
+  private static final int PER_THREAD = 20000;
+
+  public void testDequeOperations() {
+    ConcurrentFingerDeque<Integer> deque = new ConcurrentFingerDeque<Integer>();
+    assertNull(deque.pollFirst());
+    assertNull(deque.peekLast());
+    deque.offerLast(2);
+    deque.offerFirst(1);
+    deque.offerAllLast(Lists.newArrayList(3, 4));
+    deque.offerAllFirst(Lists.newArrayList(-1, 0));
+    FingerSeq<Integer> snapshot = deque.snapshot();
+    assertEquals(Lists.newArrayList(-1, 0, 1, 2, 3, 4), Lists.newArrayList(deque));
+    assertEquals(Integer.valueOf(-1), deque.pollFirst());
+    assertEquals(Integer.valueOf(4), deque.pollLast());
+    assertEquals(Integer.valueOf(0), deque.peek());
+    assertEquals(4, deque.size());
+    assertEquals(Lists.newArrayList(-1, 0, 1, 2, 3, 4), snapshot);
+    assertEquals(Lists.newArrayList(0, 1, 2, 3), deque.drain());
+    assertTrue(deque.isEmpty());
+  }
+
+  private static void runConcurrently(final Runnable task) throws InterruptedException {
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < THREADS; t++) {
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+        task.run();
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+  }
+
+  public void testConcurrentOffersAndPolls() throws InterruptedException {
+    final ConcurrentFingerDeque<Integer> deque = new ConcurrentFingerDeque<Integer>();
+    final AtomicInteger ids = new AtomicInteger();
+    runConcurrently(() -> {
+      int base = ids.getAndIncrement() * PER_THREAD;
+      for (int i = 0; i < PER_THREAD; i++) {
+        if (i % 2 == 0) {
+          deque.offerLast(base + i);
+        } else {
+          deque.offerFirst(base + i);
+        }
+      }
+    });
+    FingerSeq<Integer> snapshot = deque.snapshot();
+    assertEquals(THREADS * PER_THREAD, snapshot.size());
+    List<Integer> sorted = new ArrayList<Integer>(snapshot);
+    Collections.sort(sorted);
+    for (int i = 0; i < sorted.size(); i++) {
+      assertEquals(i, sorted.get(i).intValue());
+    }
+
+    final List<Integer> polled = Collections.synchronizedList(new ArrayList<Integer>());
+    runConcurrently(() -> {
+      List<Integer> mine = new ArrayList<Integer>();
+      for (Integer e = deque.pollFirst(); e != null; e = deque.pollLast()) {
+        mine.add(e);
+      }
+      polled.addAll(mine);
+    });
+    assertTrue(deque.isEmpty());
+    Collections.sort(polled);
+    assertEquals(sorted, polled);
+    assertEquals(THREADS * PER_THREAD, snapshot.size());
+  }
+}
@@ -0,0 +1,67 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import com.google.common.collect.Lists;
+
+public class EventLogTests extends TestCase {
+  public void testAppendAndSnapshots() {
+    EventLog<Integer> log = new EventLog<Integer>();
+    assertEquals(0, log.currentVersion());
+    List<Integer> events = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(i + 1, log.append(i));
+      events.add(i);
+    }
+    assertEquals(1001, log.appendAll(Lists.newArrayList(1000, 1001)));
+    events.add(1000);
+    events.add(1001);
+    assertEquals(events, log.current().getEvents());
+    for (int version = 0; version <= 1000; version++) {
+      EventLog.Snapshot<Integer> snapshot = log.snapshotAt(version);
+      assertEquals(version, snapshot.getVersion());
+      assertEquals(version, snapshot.getEndOffset());
+      assertEquals(events.subList(0, version), snapshot.getEvents());
+    }
+    assertEquals(events.subList(500, 510), log.read(500, 10));
+    try {
+      log.snapshotAt(1002);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {}
+  }
+
+  public void testRetention() {
+    EventLog<Integer> log = new EventLog<Integer>();
+    for (int i = 0; i < 100; i++) {
+      log.append(i);
+    }
+    long truncated = log.truncateBefore(40);
+    EventLog.Snapshot<Integer> current = log.current();
+    assertEquals(40, current.getStartOffset());
+    assertEquals(100, current.getEndOffset());
+    assertEquals(Lists.newArrayList(40, 41, 42), current.read(40, 3));
+    try {
+      current.read(39, 1);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {}
+    log.append(100);
+    assertEquals(Lists.newArrayList(99, 100), log.read(99, 2));
+
+    // Older versions still see the dropped events until they are forgotten.
+    assertEquals(Integer.valueOf(0), log.snapshotAt(50).read(0, 1).get(0));
+    log.forgetVersionsBefore(truncated);
+    assertEquals(truncated, log.oldestVersion());
+    try {
+      log.snapshotAt(50);
+      fail("Expected IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {}
+    for (int i = 101; i < 1000; i++) {
+      log.append(i);
+    }
+    assertEquals(truncated, log.snapshotAt(truncated).getVersion());
+    assertEquals(999, log.current().getEvents().last().intValue());
+  }
+}
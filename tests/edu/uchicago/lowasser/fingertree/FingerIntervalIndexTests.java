@@ -0,0 +1,66 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Function;
+
+import junit.framework.TestCase;
+
+public class FingerIntervalIndexTests extends TestCase {
+  private static final Function<int[], Integer> LOW = new Function<int[], Integer>() {
+    @Override
+    public Integer apply(int[] interval) {
+      return interval[0];
+    }
+  };
+
+  private static final Function<int[], Integer> HIGH = new Function<int[], Integer>() {
+    @Override
+    public Integer apply(int[] interval) {
+      return interval[1];
+    }
+  };
+
+  public void testOverlapping() {
+    Random random = new Random(0);
+    FingerIntervalIndex<int[], Integer> index = FingerIntervalIndex.create(LOW, HIGH);
+    List<int[]> intervals = new ArrayList<int[]>();
+    for (int i = 0; i < 500; i++) {
+      int low = random.nextInt(1000);
+      int[] interval = { low, low + random.nextInt(50) };
+      intervals.add(interval);
+      index = index.insert(interval);
+    }
+    for (int low = -10; low < 1060; low += 7) {
+      int high = low + random.nextInt(20);
+      List<int[]> actual = index.overlapping(low, high);
+      int count = 0;
+      for (int[] interval : intervals) {
+        if (interval[0] <= high && interval[1] >= low) {
+          count++;
+          assertTrue(actual.contains(interval));
+        }
+      }
+      assertEquals(count, actual.size());
+      for (int i = 1; i < actual.size(); i++) {
+        assertTrue(actual.get(i - 1)[0] <= actual.get(i)[0]);
+      }
+    }
+  }
+
+  public void testDelete() {
+    FingerIntervalIndex<int[], Integer> index = FingerIntervalIndex.create(LOW, HIGH);
+    int[] a = { 1, 5 };
+    int[] b = { 1, 3 };
+    int[] c = { 4, 9 };
+    index = index.insert(a).insert(b).insert(c);
+    FingerIntervalIndex<int[], Integer> deleted = index.delete(b);
+    assertEquals(2, deleted.size());
+    assertEquals(1, deleted.overlapping(2).size());
+    assertSame(a, deleted.overlapping(2).get(0));
+    assertSame(deleted, deleted.delete(b));
+    assertEquals(3, index.overlapping(3, 4).size());
+  }
+}
@@ -0,0 +1,59 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Collections;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FingerPriorityQueueTests extends TestCase {
+  public void testAgainstPriorityQueue() {
+    Random random = new Random(0);
+    FingerPriorityQueue<Integer> queue = FingerPriorityQueue.create();
+    PriorityQueue<Integer> expected = new PriorityQueue<Integer>(11, Collections.reverseOrder());
+    for (int i = 0; i < 2000; i++) {
+      if (expected.isEmpty() || random.nextInt(3) != 0) {
+        int value = random.nextInt(100);
+        queue = queue.insert(value);
+        expected.add(value);
+      } else {
+        assertEquals(expected.poll(), queue.peekMax());
+        queue = queue.extractMax();
+      }
+      assertEquals(expected.size(), queue.size());
+      if (!expected.isEmpty()) {
+        assertEquals(expected.peek(), queue.peekMax());
+      }
+    }
+  }
+
+  public void testPersistence() {
+    FingerPriorityQueue<Integer> base = FingerPriorityQueue.<Integer> create().insert(3).insert(7);
+    FingerPriorityQueue<Integer> extracted = base.extractMax();
+    assertEquals(Integer.valueOf(7), base.peekMax());
+    assertEquals(Integer.valueOf(3), extracted.peekMax());
+    assertEquals(2, base.size());
+  }
+
+  public void testMeld() {
+    FingerPriorityQueue<Integer> left = FingerPriorityQueue.create();
+    FingerPriorityQueue<Integer> right = FingerPriorityQueue.create();
+    for (int i = 0; i < 50; i++) {
+      left = left.insert(2 * i);
+      right = right.insert(2 * i + 1);
+    }
+    FingerPriorityQueue<Integer> melded = left.meld(right);
+    for (int i = 99; i >= 0; i--) {
+      assertEquals(Integer.valueOf(i), melded.peekMax());
+      melded = melded.extractMax();
+    }
+    assertTrue(melded.isEmpty());
+  }
+
+  public void testComparator() {
+    FingerPriorityQueue<Integer> queue =
+        FingerPriorityQueue.<Integer> create(Collections.<Integer> reverseOrder());
+    queue = queue.insert(5).insert(1).insert(9);
+    assertEquals(Integer.valueOf(1), queue.peekMax());
+  }
+}
@@ -0,0 +1,89 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FingerRopeTests extends TestCase {
+  private static String text(Random random, int length) {
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      builder.append(random.nextInt(10) == 0 ? '\n' : (char) ('a' + random.nextInt(26)));
+    }
+    return builder.toString();
+  }
+
+  private static void assertRope(String expected, FingerRope rope) {
+    assertEquals(expected.length(), rope.length());
+    assertEquals(expected, rope.toString());
+    for (int i = 0; i < expected.length(); i++) {
+      assertEquals(expected.charAt(i), rope.charAt(i));
+    }
+  }
+
+  private static void assertLines(String expected, FingerRope rope) {
+    int line = 0;
+    int start = 0;
+    for (int i = 0; i <= expected.length(); i++) {
+      assertEquals(line, rope.lineOf(i));
+      if (i == expected.length() || expected.charAt(i) == '\n') {
+        assertEquals(start, rope.lineStart(line));
+        line++;
+        start = i + 1;
+      }
+    }
+    assertEquals(line, rope.lineCount());
+  }
+
+  public void testOf() {
+    Random random = new Random(0);
+    for (int length : new int[] { 0, 1, 255, 256, 257, 5000 }) {
+      String text = text(random, length);
+      FingerRope rope = FingerRope.of(text);
+      assertRope(text, rope);
+      assertLines(text, rope);
+    }
+  }
+
+  public void testSubSequence() {
+    Random random = new Random(1);
+    String text = text(random, 3000);
+    FingerRope rope = FingerRope.of(text);
+    for (int i = 0; i < 200; i++) {
+      int start = random.nextInt(text.length() + 1);
+      int end = start + random.nextInt(text.length() - start + 1);
+      assertRope(text.substring(start, end), rope.subSequence(start, end));
+    }
+  }
+
+  public void testEdits() {
+    Random random = new Random(2);
+    StringBuilder expected = new StringBuilder();
+    FingerRope rope = FingerRope.empty();
+    for (int i = 0; i < 300; i++) {
+      int start = random.nextInt(expected.length() + 1);
+      if (random.nextBoolean()) {
+        String inserted = text(random, random.nextInt(300));
+        expected.insert(start, inserted);
+        rope = rope.insert(start, inserted);
+      } else {
+        int end = start + random.nextInt(Math.min(400, expected.length() - start) + 1);
+        expected.delete(start, end);
+        rope = rope.delete(start, end);
+      }
+      assertEquals(expected.toString(), rope.toString());
+    }
+    assertRope(expected.toString(), rope);
+    assertLines(expected.toString(), rope);
+  }
+
+  public void testPersistence() {
+    FingerRope original = FingerRope.of("one\ntwo\nthree");
+    FingerRope edited = original.replace(4, 7, "2").concat("\nfour");
+    assertEquals("one\ntwo\nthree", original.toString());
+    assertEquals("one\n2\nthree\nfour", edited.toString());
+    assertEquals(3, original.lineCount());
+    assertEquals(4, edited.lineCount());
+    assertEquals(6, edited.lineStart(2));
+  }
+}
@@ -0,0 +1,548 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Spliterator;
+
+import junit.framework.TestCase;
+
+import com.google.common.collect.Lists;
+
+public class FingerSeqTests extends TestCase {
+  private static final int MAX_SIZE = 200;
+
+  private static List<Integer> range(int from, int to) {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = from; i < to; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  private static final int C = Chunk.CAPACITY;
+
+  /**
+   * Sizes on either side of the first two multiples of {@link Chunk#CAPACITY}.
+   */
+  private static final int[] BOUNDARY_SIZES = { 1, C - 1, C, C + 1, 2 * C - 1, 2 * C, 2 * C + 1 };
+
+  /**
+   * Returns the lengths of the chunks of {@code seq}, checking that each holds between one and
+   * {@link Chunk#CAPACITY} elements.
+   */
+  private static List<Integer> chunkLengths(FingerSeq<?> seq) {
+    List<Integer> lengths = Lists.newArrayList();
+    for (Iterator<? extends Chunk<?>> leaves = seq.tree().leafIterator(); leaves.hasNext();) {
+      int length = leaves.next().length();
+      assertTrue(length >= 1 && length <= C);
+      lengths.add(length);
+    }
+    return lengths;
+  }
+
+  public void testAppend() {
+    FingerSeq<Integer> seq = FingerSeq.empty();
+    for (int i = 0; i < MAX_SIZE; i++) {
+      seq = seq.append(i);
+      assertEquals(range(0, i + 1), seq);
+      assertEquals(Integer.valueOf(0), seq.first());
+      assertEquals(Integer.valueOf(i), seq.last());
+    }
+  }
+
+  public void testPrepend() {
+    FingerSeq<Integer> seq = FingerSeq.empty();
+    for (int i = MAX_SIZE - 1; i >= 0; i--) {
+      seq = seq.prepend(i);
+      assertEquals(range(i, MAX_SIZE), seq);
+    }
+  }
+
+  public void testGet() {
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, MAX_SIZE));
+    for (int i = 0; i < MAX_SIZE; i++) {
+      assertEquals(Integer.valueOf(i), seq.get(i));
+    }
+    try {
+      seq.get(MAX_SIZE);
+      fail();
+    } catch (IndexOutOfBoundsException expected) {
+    }
+  }
+
+  public void testConcat() {
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 40; j++) {
+        FingerSeq<Integer> left = FingerSeq.copyOf(range(0, i));
+        FingerSeq<Integer> right = FingerSeq.copyOf(range(i, i + j));
+        assertEquals(range(0, i + j), left.concat(right));
+      }
+    }
+  }
+
+  public void testSubList() {
+    for (int n = 0; n < 30; n++) {
+      FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, n));
+      for (int from = 0; from <= n; from++) {
+        for (int to = from; to <= n; to++) {
+          assertEquals(range(from, to), seq.subList(from, to));
+        }
+      }
+    }
+  }
+
+  public void testInsert() {
+    for (int n = 0; n < 50; n++) {
+      FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, n));
+      for (int i = 0; i <= n; i++) {
+        List<Integer> expected = range(0, n);
+        expected.add(i, -1);
+        assertEquals(expected, seq.insert(i, -1));
+      }
+    }
+  }
+
+  public void testRemoveAt() {
+    for (int n = 1; n < 50; n++) {
+      FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, n));
+      for (int i = 0; i < n; i++) {
+        List<Integer> expected = range(0, n);
+        expected.remove(i);
+        assertEquals(expected, seq.removeAt(i));
+      }
+    }
+  }
+
+  public void testPersistence() {
+    FingerSeq<Integer> base = FingerSeq.copyOf(range(0, 10));
+    FingerSeq<Integer> appended = base.append(10);
+    FingerSeq<Integer> prepended = base.prepend(-1);
+    assertEquals(range(0, 10), base);
+    assertEquals(range(0, 11), appended);
+    assertEquals(range(-1, 10), prepended);
+  }
+
+  public void testImmutable() {
+    FingerSeq<Integer> seq = FingerSeq.of(1, 2, 3);
+    try {
+      seq.add(4);
+      fail();
+    } catch (UnsupportedOperationException expected) {
+    }
+  }
+
+  public void testIterators() {
+    for (int size : new int[] { 0, 1, 31, 33, 200, 5000 }) {
+      FingerSeq<Integer> seq = FingerSeq.empty();
+      for (int i = 0; i < size; i++) {
+        seq = (i % 2 == 0) ? seq.append(i) : seq.prepend(-i);
+      }
+      List<Integer> expected = new ArrayList<Integer>(seq.size());
+      for (int i = 0; i < size; i++) {
+        expected.add(seq.get(i));
+      }
+      assertEquals(expected, Lists.newArrayList(seq.iterator()));
+      assertEquals(Lists.reverse(expected), Lists.newArrayList(seq.reverseIterator()));
+      final List<Integer> visited = new ArrayList<Integer>();
+      seq.forEach(visited::add);
+      assertEquals(expected, visited);
+    }
+  }
+
+  private static <E> void splitFully(Spliterator<E> spliterator, List<E> sink) {
+    long size = spliterator.estimateSize();
+    Spliterator<E> prefix = spliterator.trySplit();
+    if (prefix == null) {
+      int before = sink.size();
+      spliterator.forEachRemaining(sink::add);
+      assertEquals(size, sink.size() - before);
+    } else {
+      assertEquals(size, prefix.estimateSize() + spliterator.estimateSize());
+      splitFully(prefix, sink);
+      splitFully(spliterator, sink);
+    }
+  }
+
+  public void testSpliterator() {
+    for (int size : new int[] { 0, 1, 33, 5000 }) {
+      FingerSeq<Integer> seq = FingerSeq.empty();
+      for (int i = 0; i < size; i++) {
+        seq = seq.append(i);
+      }
+      List<Integer> visited = new ArrayList<Integer>();
+      splitFully(seq.spliterator(), visited);
+      assertEquals(range(0, size), visited);
+
+      Spliterator<Integer> partial = seq.spliterator();
+      partial.tryAdvance(visited::add);
+      visited.clear();
+      splitFully(partial, visited);
+      assertEquals(range(Math.min(1, size), size), visited);
+
+      assertEquals((long) size * (size - 1) / 2,
+          seq.parallelStream().mapToLong(Integer::longValue).sum());
+    }
+  }
+
+  public void testParallelCopyOf() {
+    for (int size : new int[] { 0, 1, 100, 100000, 250007 }) {
+      List<Integer> expected = range(0, size);
+      FingerSeq<Integer> seq = FingerSeq.parallelCopyOf(expected);
+      assertEquals(expected, seq);
+      assertEquals(expected, FingerSeq.copyOf(expected));
+      assertEquals(Integer.valueOf(size), seq.append(size).last());
+    }
+  }
+
+  public void testBuilder() {
+    Random random = new Random(0);
+    for (int size : new int[] { 0, 1, 31, 32, 33, 1000, 20000 }) {
+      FingerSeq.Builder<Integer> builder = FingerSeq.builder();
+      LinkedList<Integer> expected = new LinkedList<Integer>();
+      for (int i = 0; i < size; i++) {
+        if (random.nextInt(4) == 0) {
+          builder.addFirst(i);
+          expected.addFirst(i);
+        } else {
+          builder.add(i);
+          expected.addLast(i);
+        }
+      }
+      FingerSeq<Integer> seq = builder.build();
+      assertEquals(expected, seq);
+      builder.add(-1);
+      assertEquals(expected, seq);
+      expected.addLast(-1);
+      assertEquals(expected, builder.build());
+    }
+  }
+
+  public void testWithoutFirstAndLast() {
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, MAX_SIZE * 10));
+    LinkedList<Integer> expected = new LinkedList<Integer>(seq);
+    while (!seq.isEmpty()) {
+      if (expected.size() % 3 == 0) {
+        seq = seq.withoutLast();
+        expected.removeLast();
+      } else {
+        seq = seq.withoutFirst();
+        expected.removeFirst();
+      }
+      assertEquals(expected.size(), seq.size());
+      if (!expected.isEmpty()) {
+        assertEquals(expected.getFirst(), seq.first());
+        assertEquals(expected.getLast(), seq.last());
+      }
+    }
+    assertEquals(expected, seq);
+    try {
+      seq.withoutFirst();
+      fail();
+    } catch (NoSuchElementException expectedException) {
+    }
+  }
+
+  public void testUpdateAndModify() {
+    FingerSeq<Integer> base = FingerSeq.empty();
+    for (int i = 0; i < MAX_SIZE * 5; i++) {
+      base = (i % 2 == 0) ? base.append(i) : base.prepend(i);
+    }
+    List<Integer> expected = new ArrayList<Integer>(base);
+    FingerSeq<Integer> seq = base;
+    for (int i = 0; i < base.size(); i += 7) {
+      seq = seq.update(i, -i).modify(i, x -> x - 1);
+      expected.set(i, -i - 1);
+    }
+    assertEquals(expected, seq);
+    assertEquals(new ArrayList<Integer>(base), Lists.newArrayList(base.iterator()));
+    assertFalse(expected.equals(base));
+  }
+
+  public void testSplice() {
+    Random random = new Random(1);
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, MAX_SIZE));
+    List<Integer> expected = new ArrayList<Integer>(seq);
+    for (int round = 0; round < 500; round++) {
+      int from = random.nextInt(expected.size() + 1);
+      int to = from + random.nextInt(expected.size() - from + 1);
+      List<Integer> replacement = range(round * 1000, round * 1000 + random.nextInt(70));
+      switch (round % 3) {
+        case 0:
+          seq = seq.splice(from, to, replacement);
+          expected.subList(from, to).clear();
+          expected.addAll(from, replacement);
+          break;
+        case 1:
+          seq = seq.insertAll(from, FingerSeq.copyOf(replacement));
+          expected.addAll(from, replacement);
+          break;
+        default:
+          seq = seq.deleteRange(from, to);
+          expected.subList(from, to).clear();
+          break;
+      }
+      assertEquals(expected, seq);
+    }
+  }
+
+  public void testHashCodeAndEquals() {
+    Random random = new Random(2);
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, 5000));
+    List<Integer> expected = new ArrayList<Integer>(seq);
+    for (int round = 0; round < 100; round++) {
+      int index = random.nextInt(expected.size());
+      FingerSeq<Integer> updated = seq.update(index, -round);
+      expected.set(index, -round);
+      assertEquals(expected.hashCode(), updated.hashCode());
+      assertEquals(expected, updated);
+      assertTrue(updated.equals(FingerSeq.copyOf(expected)));
+      assertTrue(FingerSeq.copyOf(expected).equals(updated));
+      if (seq.get(index) != -round) {
+        assertFalse(updated.equals(seq));
+      }
+      seq = updated;
+    }
+    assertFalse(seq.equals(seq.append(0)));
+    assertEquals(FingerSeq.empty().hashCode(), new ArrayList<Integer>().hashCode());
+  }
+
+  private static <E> List<E> applyChanges(List<E> older, List<E> newer, List<Change> changes) {
+    List<E> result = new ArrayList<E>(older);
+    for (Change change : Lists.reverse(changes)) {
+      result.subList(change.getOldStart(), change.getOldEnd()).clear();
+      result.addAll(
+          change.getOldStart(),
+          newer.subList(change.getNewStart(), change.getNewEnd()));
+    }
+    return result;
+  }
+
+  public void testDiff() {
+    Random random = new Random(3);
+    FingerSeq<Integer> older = FingerSeq.copyOf(range(0, 10000));
+    assertTrue(FingerSeq.diff(older, older).isEmpty());
+
+    FingerSeq<Integer> updated = older.update(100, -1).update(101, -2).update(9000, -3);
+    List<Change> changes = FingerSeq.diff(older, updated);
+    assertEquals(2, changes.size());
+    assertEquals(new Change(100, 102, 100, 102), changes.get(0));
+    assertEquals(new Change(9000, 9001, 9000, 9001), changes.get(1));
+
+    FingerSeq<Integer> inserted = older.insert(5000, -1);
+    changes = FingerSeq.diff(older, inserted);
+    assertEquals(1, changes.size());
+    Change change = changes.get(0);
+    assertTrue(change.getOldStart() <= 5000 && change.getOldEnd() >= 5000);
+    assertTrue(change.getOldEnd() - change.getOldStart() < 1000);
+    assertEquals(1, (change.getNewEnd() - change.getNewStart())
+        - (change.getOldEnd() - change.getOldStart()));
+
+    for (int round = 0; round < 200; round++) {
+      FingerSeq<Integer> newer = older;
+      for (int edit = random.nextInt(4); edit >= 0; edit--) {
+        int from = random.nextInt(newer.size());
+        int to = Math.min(newer.size(), from + random.nextInt(100));
+        switch (random.nextInt(3)) {
+          case 0:
+            newer = newer.update(from, -from);
+            break;
+          case 1:
+            newer = newer.splice(from, to, range(-100, -100 + random.nextInt(100)));
+            break;
+          default:
+            newer = newer.insert(from, -from);
+            break;
+        }
+      }
+      changes = FingerSeq.diff(older, newer);
+      assertEquals(newer, applyChanges(older, newer, changes));
+      older = newer;
+    }
+  }
+
+  public void testSerialization() throws IOException {
+    for (int size : new int[] { 0, 1, Chunk.CAPACITY, 10000 }) {
+      FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, size));
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      seq.writeTo(bytes, ElementCodec.int32());
+      assertEquals(9 + 4 * size, bytes.size());
+      FingerSeq<Integer> read =
+          FingerSeq.readFrom(new ByteArrayInputStream(bytes.toByteArray()), ElementCodec.int32());
+      assertEquals(seq, read);
+    }
+
+    FingerSeq<String> strings = FingerSeq.of("a", "", "\u00e9t\u00e9");
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    strings.writeTo(Channels.newChannel(bytes), ElementCodec.utf());
+    ByteArrayInputStream in = new ByteArrayInputStream(bytes.toByteArray());
+    assertEquals(strings, FingerSeq.readFrom(Channels.newChannel(in), ElementCodec.utf()));
+  }
+
+  public void testSerializationThroughFileChannel() throws IOException {
+    FingerSeq<Long> seq = FingerSeq.copyOf(Lists.transform(range(0, 100000), i -> i * 31L));
+    File file = File.createTempFile("seq", null);
+    try {
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        FileChannel channel = raf.getChannel();
+        seq.writeTo(channel, ElementCodec.int64());
+        assertEquals(9 + 8 * seq.size(), channel.size());
+        channel.position(0);
+        final FileChannel source = channel;
+        final int[] reads = { 0 };
+        ReadableByteChannel counting = new ReadableByteChannel() {
+          @Override
+          public int read(ByteBuffer dst) throws IOException {
+            reads[0]++;
+            return source.read(dst);
+          }
+
+          @Override
+          public boolean isOpen() {
+            return source.isOpen();
+          }
+
+          @Override
+          public void close() throws IOException {
+            source.close();
+          }
+        };
+        assertEquals(seq, FingerSeq.readFrom(counting, ElementCodec.int64()));
+        // Buffered, so far fewer reads than elements.
+        assertTrue(reads[0] < 1000);
+      } finally {
+        raf.close();
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  public void testSerializationRejectsBadInput() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    FingerSeq.of(1L, 2L).writeTo(bytes, ElementCodec.int64());
+    byte[] data = bytes.toByteArray();
+    data[4] = 99;
+    try {
+      FingerSeq.readFrom(new ByteArrayInputStream(data), ElementCodec.int64());
+      fail("Expected IOException");
+    } catch (IOException expected) {}
+    data[0] = 0;
+    try {
+      FingerSeq.readFrom(new ByteArrayInputStream(data), ElementCodec.int64());
+      fail("Expected IOException");
+    } catch (IOException expected) {}
+  }
+
+  public void testConcatAtChunkBoundaries() {
+    for (int i : BOUNDARY_SIZES) {
+      for (int j : BOUNDARY_SIZES) {
+        FingerSeq<Integer> left = FingerSeq.copyOf(range(0, i));
+        FingerSeq<Integer> right = FingerSeq.copyOf(range(i, i + j));
+        FingerSeq<Integer> seq = left.concat(right);
+        assertEquals(range(0, i + j), seq);
+
+        List<Integer> expected = chunkLengths(left);
+        List<Integer> rightLengths = chunkLengths(right);
+        int leftEnd = expected.get(expected.size() - 1);
+        if (leftEnd + rightLengths.get(0) <= C) {
+          expected.set(expected.size() - 1, leftEnd + rightLengths.get(0));
+          expected.addAll(rightLengths.subList(1, rightLengths.size()));
+        } else {
+          expected.addAll(rightLengths);
+        }
+        assertEquals(expected, chunkLengths(seq));
+      }
+    }
+    FingerSeq<Integer> partial = FingerSeq.copyOf(range(0, C - 1));
+    assertEquals(Lists.newArrayList(C), chunkLengths(partial.concat(FingerSeq.of(C - 1))));
+    assertEquals(
+        Lists.newArrayList(C - 1, 2),
+        chunkLengths(partial.concat(FingerSeq.of(C - 1, C))));
+  }
+
+  public void testRemoveAtOnlyElementOfChunk() {
+    FingerSeq<Integer> seq =
+        FingerSeq.copyOf(range(0, C)).append(C).concat(FingerSeq.copyOf(range(C + 1, 2 * C + 1)));
+    assertEquals(Lists.newArrayList(C, 1, C), chunkLengths(seq));
+    FingerSeq<Integer> removed = seq.removeAt(C);
+    List<Integer> expected = range(0, 2 * C + 1);
+    expected.remove(C);
+    assertEquals(expected, removed);
+    assertEquals(Lists.newArrayList(C, C), chunkLengths(removed));
+
+    FingerSeq<Integer> tail = FingerSeq.copyOf(range(0, C)).append(C);
+    assertEquals(range(0, C), tail.removeAt(C));
+    assertEquals(Lists.newArrayList(C), chunkLengths(tail.removeAt(C)));
+    assertTrue(FingerSeq.of(0).removeAt(0).isEmpty());
+
+    for (int n : BOUNDARY_SIZES) {
+      FingerSeq<Integer> base = FingerSeq.copyOf(range(0, n));
+      for (int i = 0; i < n; i++) {
+        expected = range(0, n);
+        expected.remove(i);
+        FingerSeq<Integer> result = base.removeAt(i);
+        assertEquals(expected, result);
+        chunkLengths(result);
+      }
+    }
+  }
+
+  public void testInsertIntoFullChunk() {
+    FingerSeq<Integer> full = FingerSeq.copyOf(range(0, 2 * C));
+    assertEquals(Lists.newArrayList(C, C), chunkLengths(full));
+    for (int i : new int[] { 0, 1, C / 2, C - 1, C, C + 1, 2 * C - 1 }) {
+      FingerSeq<Integer> inserted = full.insert(i, -1);
+      List<Integer> expected = range(0, 2 * C);
+      expected.add(i, -1);
+      assertEquals(expected, inserted);
+      assertEquals(3, chunkLengths(inserted).size());
+    }
+
+    for (int n : BOUNDARY_SIZES) {
+      FingerSeq<Integer> base = FingerSeq.copyOf(range(0, n));
+      for (int i = 0; i <= n; i++) {
+        List<Integer> expected = range(0, n);
+        expected.add(i, -1);
+        FingerSeq<Integer> result = base.insert(i, -1);
+        assertEquals(expected, result);
+        chunkLengths(result);
+      }
+    }
+  }
+
+  public void testSubListCuttingMidChunk() {
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(0, 2 * C));
+    FingerSeq<Integer> middle = seq.subList(C / 2, C + C / 2);
+    assertEquals(range(C / 2, C + C / 2), middle);
+    assertEquals(Lists.newArrayList(C / 2, C / 2), chunkLengths(middle));
+    assertEquals(Lists.newArrayList(C - 2), chunkLengths(seq.subList(1, C - 1)));
+
+    int[] cuts = { 0, 1, C / 2, C - 1, C, C + 1, 2 * C - 1, 2 * C, 2 * C + 1 };
+    for (int n : BOUNDARY_SIZES) {
+      FingerSeq<Integer> base = FingerSeq.copyOf(range(0, n));
+      for (int from : cuts) {
+        for (int to : cuts) {
+          if (from <= to && to <= n) {
+            FingerSeq<Integer> sub = base.subList(from, to);
+            assertEquals(range(from, to), sub);
+            chunkLengths(sub);
+          }
+        }
+      }
+    }
+  }
+}
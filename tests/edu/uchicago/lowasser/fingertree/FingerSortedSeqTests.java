@@ -0,0 +1,77 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FingerSortedSeqTests extends TestCase {
+  private static FingerSortedSeq<Integer> randomSeq(Random random, int size, List<Integer> sink) {
+    FingerSortedSeq<Integer> seq = FingerSortedSeq.create();
+    for (int i = 0; i < size; i++) {
+      int value = random.nextInt(size + 1);
+      seq = seq.insert(value);
+      sink.add(value);
+    }
+    Collections.sort(sink);
+    return seq;
+  }
+
+  public void testInsertAndDelete() {
+    Random random = new Random(0);
+    FingerSortedSeq<Integer> seq = FingerSortedSeq.create();
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 1000; i++) {
+      int value = random.nextInt(200);
+      if (random.nextBoolean()) {
+        seq = seq.insert(value);
+        expected.add(value);
+        Collections.sort(expected);
+      } else {
+        seq = seq.delete(value);
+        expected.remove(Integer.valueOf(value));
+      }
+      assertEquals(expected, new ArrayList<Integer>(seq));
+    }
+  }
+
+  public void testQueries() {
+    Random random = new Random(1);
+    List<Integer> expected = new ArrayList<Integer>();
+    FingerSortedSeq<Integer> seq = randomSeq(random, 300, expected);
+    for (int value = -1; value <= 302; value++) {
+      int rank = 0;
+      while (rank < expected.size() && expected.get(rank) < value) {
+        rank++;
+      }
+      assertEquals(rank, seq.rank(value));
+      assertEquals(expected.contains(value), seq.contains(value));
+      assertEquals((rank < expected.size()) ? expected.get(rank) : null, seq.ceiling(value));
+      Integer floor = null;
+      for (Integer e : expected) {
+        if (e <= value) {
+          floor = e;
+        }
+      }
+      assertEquals(floor, seq.floor(value));
+    }
+    assertEquals(expected.get(0), seq.first());
+    assertEquals(expected.get(expected.size() - 1), seq.last());
+  }
+
+  public void testMerge() {
+    Random random = new Random(2);
+    for (int m = 0; m < 40; m += 3) {
+      for (int n = 0; n < 200; n += 17) {
+        List<Integer> expected = new ArrayList<Integer>();
+        FingerSortedSeq<Integer> left = randomSeq(random, m, expected);
+        FingerSortedSeq<Integer> right = randomSeq(random, n, expected);
+        Collections.sort(expected);
+        assertEquals(expected, new ArrayList<Integer>(left.merge(right)));
+        assertEquals(expected, new ArrayList<Integer>(right.merge(left)));
+      }
+    }
+  }
+}
@@ -7,7 +7,9 @@ import com.google.common.primitives.Ints;
 
 import java.util.List;
 
-public class FingerTreeTests {
+import junit.framework.TestCase;
+
+public class FingerTreeTests extends TestCase {
   private static final ImmutableList<Elem<Integer>> SAMPLE_ELEMS = ImmutableList.copyOf(Lists
       .transform(
           Ints.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10),
@@ -27,4 +29,282 @@ public class FingerTreeTests {
     }
     SAMPLE_TREES = builder.build();
   }
+
+  private static List<Elem<Integer>> elems(int n) {
+    List<Elem<Integer>> elems = Lists.newArrayList();
+    for (int i = 0; i < n; i++) {
+      elems.add(Elem.of(i));
+    }
+    return elems;
+  }
+
+  /**
+   * Joins the elements it measures. This is not commutative, so an annotation combined out of
+   * order shows up as well as a stale one.
+   */
+  private static final Measured<Integer, String> JOINED = new Measured<Integer, String>() {
+    @Override
+    public String identity() {
+      return "";
+    }
+
+    @Override
+    public String combine(String left, String right) {
+      return left + right;
+    }
+
+    @Override
+    public String measure(Integer element) {
+      return element + ",";
+    }
+  };
+
+  private static FingerTree<Integer, Elem<Integer>> joinedTree(int from, int to) {
+    List<Elem<Integer>> elems = Lists.newArrayList();
+    for (int i = from; i < to; i++) {
+      elems.add(Elem.of(i));
+    }
+    return FingerTree.fromList(JOINED, elems);
+  }
+
+  private static String joined(int from, int to) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = from; i < to; i++) {
+      builder.append(i).append(',');
+    }
+    return builder.toString();
+  }
+
+  private static int commas(String joined) {
+    int count = 0;
+    for (int i = 0; i < joined.length(); i++) {
+      if (joined.charAt(i) == ',') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Checks that every tree, digit and node beneath {@code container} caches the annotation under
+   * {@code by} recomputed from its parts, and that nodes have a field for it only if {@code by} is
+   * not {@link Measured#SIZE}. Returns the recomputed annotation.
+   */
+  private static <V> V checkMeasures(Measured<Integer, V> by, Container<Integer> container) {
+    if (LeafIterator.isLeaf(container)) {
+      return container.measure(by);
+    }
+    if (container instanceof Node) {
+      assertEquals((Object) by != Measured.SIZE, container instanceof Node.MeasuredNode);
+    }
+    V v = by.identity();
+    for (int i = 0; i < LeafIterator.partCount(container); i++) {
+      v = by.combine(v, checkMeasures(by, LeafIterator.part(container, i)));
+    }
+    assertEquals(v, container.measure(by));
+    return v;
+  }
+
+  private static void assertContents(int n, FingerTree<Integer, Elem<Integer>> tree) {
+    assertEquals(n, tree.length());
+    List<Integer> expected = Lists.newArrayList();
+    for (int i = 0; i < n; i++) {
+      assertEquals(Integer.valueOf(i), tree.index(i));
+      expected.add(i);
+    }
+    assertEquals(expected, Lists.newArrayList(tree));
+  }
+
+  public void testSampleTrees() {
+    for (int i = 0; i < SAMPLE_TREES.size(); i++) {
+      assertContents(i, SAMPLE_TREES.get(i));
+    }
+  }
+
+  public void testFromList() {
+    for (int n = 0; n < 300; n++) {
+      FingerTree<Integer, Elem<Integer>> tree = FingerTree.fromList(elems(n));
+      assertContents(n, tree);
+      assertContents(n + 1, tree.snoc(Elem.of(n)));
+      FingerTree<Integer, Elem<Integer>> rest = tree;
+      for (int i = 0; i < n; i++) {
+        View<Elem<Integer>, FingerTree<Integer, Elem<Integer>>> view = rest.viewL().get();
+        assertEquals(Integer.valueOf(i), view.getEnd().index(0));
+        rest = view.getRemainder();
+      }
+      assertEquals(0, rest.length());
+    }
+  }
+
+  public void testTreeBuilder() {
+    for (int n = 0; n < 300; n++) {
+      TreeBuilder<Integer, Elem<Integer>> builder =
+          new TreeBuilder<Integer, Elem<Integer>>(Measured.<Integer> size());
+      int low = 0;
+      int high = 0;
+      for (int i = 0; i < n; i++) {
+        if (i % 3 == 1) {
+          builder.cons(Elem.of(--low));
+        } else {
+          builder.snoc(Elem.of(high++));
+        }
+      }
+      FingerTree<Integer, Elem<Integer>> tree = builder.build();
+      assertEquals(n, tree.length());
+      FingerTree<Integer, Elem<Integer>> rest = tree;
+      for (int i = low; i < high; i++) {
+        assertEquals(Integer.valueOf(i), tree.index(i - low));
+        View<Elem<Integer>, FingerTree<Integer, Elem<Integer>>> view = rest.viewL().get();
+        assertEquals(Integer.valueOf(i), view.getEnd().index(0));
+        rest = view.getRemainder();
+      }
+    }
+  }
+
+  public void testForkedVersions() {
+    FingerTree<Integer, Elem<Integer>> base = FingerTree.empty();
+    for (int i = 0; i < 1000; i++) {
+      base = base.snoc(Elem.of(i));
+    }
+    for (int fork = 0; fork < 20; fork++) {
+      FingerTree<Integer, Elem<Integer>> left = base;
+      FingerTree<Integer, Elem<Integer>> right = base;
+      for (int i = 1; i <= fork * 7; i++) {
+        left = left.cons(Elem.of(-i));
+        right = right.snoc(Elem.of(999 + i));
+      }
+      assertEquals(1000 + fork * 7, left.length());
+      for (int i = 0; i < left.length(); i++) {
+        assertEquals(Integer.valueOf(i - fork * 7), left.index(i));
+        assertEquals(Integer.valueOf(i), right.index(i));
+      }
+      assertEquals(Integer.valueOf(-fork * 7), left.viewL().get().getEnd().index(0));
+      assertEquals(Integer.valueOf(999 + fork * 7), right.viewR().get().getEnd().index(0));
+    }
+  }
+
+  public void testForkedVersionsShareForcedMiddle() {
+    // The last of these snocs overflows the suffix and leaves a suspended push in the middle.
+    FingerTree<Integer, Elem<Integer>> base = FingerTree.empty();
+    for (int i = 0; i < 999; i++) {
+      base = base.snoc(Elem.of(i));
+    }
+    List<FingerTree<Integer, Elem<Integer>>> forks = Lists.newArrayList();
+    for (int i = 0; i < 20; i++) {
+      forks.add(base.replaceFirst(Elem.of(-i)));
+      forks.add(base.cons(Elem.of(-i)));
+    }
+    long forcedBefore = TreeCounters.get().getPushesForced();
+    Container<Integer> mid = forks.get(0).part(1);
+    for (FingerTree<Integer, Elem<Integer>> fork : forks) {
+      assertSame(mid, fork.part(1));
+    }
+    assertSame(mid, base.part(1));
+    if (TreeCounters.ENABLED) {
+      assertEquals(forcedBefore + 1, TreeCounters.get().getPushesForced());
+    }
+  }
+
+  public void testRemoveFirstAndLast() {
+    for (int n = 0; n < 200; n++) {
+      FingerTree<Integer, Elem<Integer>> tree = FingerTree.fromList(elems(n));
+      int low = 0;
+      int high = n;
+      while (!tree.isEmpty()) {
+        assertEquals(Integer.valueOf(low), tree.firstOrNull().index(0));
+        assertEquals(Integer.valueOf(high - 1), tree.lastOrNull().index(0));
+        if ((low + high) % 2 == 0) {
+          tree = tree.removeFirst();
+          low++;
+        } else {
+          tree = tree.removeLast();
+          high--;
+        }
+        assertEquals(high - low, tree.length());
+      }
+      assertNull(tree.firstOrNull());
+      assertEquals(low, high);
+    }
+  }
+
+  public void testAdjust() {
+    for (int n = 1; n < 200; n++) {
+      FingerTree<Integer, Elem<Integer>> tree = FingerTree.fromList(elems(n));
+      for (int i = 0; i < n; i++) {
+        FingerTree<Integer, Elem<Integer>> adjusted =
+            tree.adjust(i, (leaf, offset) -> Elem.of(-leaf.index(offset)));
+        assertEquals(n, adjusted.length());
+        for (int j = 0; j < n; j++) {
+          assertEquals(Integer.valueOf((i == j) ? -j : j), adjusted.index(j));
+        }
+      }
+      assertContents(n, tree);
+    }
+  }
+
+  public void testSizeNodesCacheNoMeasure() {
+    FingerTree<Integer, Elem<Integer>> tree = FingerTree.fromList(elems(300));
+    for (int i = 0; i < 300; i++) {
+      tree = tree.snoc(Elem.of(300 + i)).cons(Elem.of(-1 - i));
+    }
+    assertEquals(Integer.valueOf(900), checkMeasures(Measured.<Integer> size(), tree));
+  }
+
+  public void testMeasureAfterConsAndSnoc() {
+    FingerTree<Integer, Elem<Integer>> tree = FingerTree.empty(JOINED);
+    int low = 0;
+    int high = 0;
+    for (int i = 0; i < 200; i++) {
+      tree = (i % 3 == 1) ? tree.cons(Elem.of(--low)) : tree.snoc(Elem.of(high++));
+      assertEquals(joined(low, high), checkMeasures(JOINED, tree));
+    }
+  }
+
+  public void testMeasureAfterViews() {
+    FingerTree<Integer, Elem<Integer>> tree = joinedTree(0, 200);
+    int low = 0;
+    int high = 200;
+    while (low < high) {
+      if ((low + high) % 2 == 0) {
+        View<Elem<Integer>, FingerTree<Integer, Elem<Integer>>> view = tree.viewL().get();
+        assertEquals(Integer.valueOf(low++), view.getEnd().index(0));
+        tree = view.getRemainder();
+      } else {
+        View<Elem<Integer>, FingerTree<Integer, Elem<Integer>>> view = tree.viewR().get();
+        assertEquals(Integer.valueOf(--high), view.getEnd().index(0));
+        tree = view.getRemainder();
+      }
+      assertEquals(joined(low, high), checkMeasures(JOINED, tree));
+    }
+  }
+
+  public void testMeasureAfterSplit() {
+    for (int n : new int[] { 1, 2, 5, 9, 17, 40, 300 }) {
+      FingerTree<Integer, Elem<Integer>> tree = joinedTree(0, n);
+      for (int k = 0; k < n; k += 1 + n / 40) {
+        final int before = k;
+        Split<Elem<Integer>, FingerTree<Integer, Elem<Integer>>> split =
+            tree.split(JOINED, acc -> commas(acc) > before).get();
+        assertEquals(joined(0, k), checkMeasures(JOINED, split.getLeft()));
+        assertEquals(Integer.valueOf(k), split.getPivot().index(0));
+        assertEquals(joined(k + 1, n), checkMeasures(JOINED, split.getRight()));
+      }
+      assertFalse(tree.split(JOINED, acc -> commas(acc) > n).isPresent());
+    }
+  }
+
+  public void testMeasureAfterConcat() {
+    for (int left = 0; left < 60; left += 7) {
+      for (int right = 0; right < 60; right += 5) {
+        FingerTree<Integer, Elem<Integer>> tree =
+            joinedTree(0, left).concat(joinedTree(left, left + right));
+        assertEquals(joined(0, left + right), checkMeasures(JOINED, tree));
+      }
+    }
+    FingerTree<Integer, Elem<Integer>> tree = FingerTree.empty(JOINED);
+    for (int i = 0; i < 30; i++) {
+      tree = tree.concat(joinedTree(i * 11, (i + 1) * 11));
+    }
+    assertEquals(joined(0, 330), checkMeasures(JOINED, tree));
+  }
 }
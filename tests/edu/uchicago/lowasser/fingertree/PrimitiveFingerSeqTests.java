@@ -0,0 +1,103 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+import junit.framework.TestCase;
+
+public class PrimitiveFingerSeqTests extends TestCase {
+  private static final int MAX_SIZE = 500;
+
+  private static int[] range(int from, int to) {
+    int[] values = new int[to - from];
+    for (int i = from; i < to; i++) {
+      values[i - from] = i;
+    }
+    return values;
+  }
+
+  public void testIntAppendAndPrepend() {
+    IntFingerSeq appended = IntFingerSeq.empty();
+    IntFingerSeq prepended = IntFingerSeq.empty();
+    for (int i = 0; i < MAX_SIZE; i++) {
+      appended = appended.append(i);
+      prepended = prepended.prepend(MAX_SIZE - 1 - i);
+    }
+    assertTrue(Arrays.equals(range(0, MAX_SIZE), appended.toArray()));
+    assertTrue(Arrays.equals(range(0, MAX_SIZE), prepended.toArray()));
+    assertEquals(0, appended.first());
+    assertEquals(MAX_SIZE - 1, appended.last());
+  }
+
+  public void testIntGetAndIterator() {
+    IntFingerSeq seq = IntFingerSeq.copyOf(range(0, MAX_SIZE));
+    assertEquals(MAX_SIZE, seq.size());
+    for (int i = 0; i < MAX_SIZE; i++) {
+      assertEquals(i, seq.getInt(i));
+    }
+    PrimitiveIterator.OfInt iterator = seq.iterator();
+    for (int i = 0; i < MAX_SIZE; i++) {
+      assertTrue(iterator.hasNext());
+      assertEquals(i, iterator.nextInt());
+    }
+    assertFalse(iterator.hasNext());
+
+    IntFingerSeq negative = IntFingerSeq.of(-1, Integer.MIN_VALUE);
+    assertEquals(-1, negative.getInt(0));
+    assertEquals(Integer.MIN_VALUE, negative.getInt(1));
+  }
+
+  public void testIntConcat() {
+    for (int split = 0; split <= 150; split += 7) {
+      IntFingerSeq seq = IntFingerSeq.copyOf(range(0, split))
+          .concat(IntFingerSeq.copyOf(range(split, 150)));
+      assertTrue(Arrays.equals(range(0, 150), seq.toArray()));
+    }
+  }
+
+  public void testLong() {
+    LongFingerSeq seq = LongFingerSeq.empty();
+    for (int i = 0; i < MAX_SIZE; i++) {
+      seq = seq.append(Long.MAX_VALUE - i);
+    }
+    for (int i = 0; i < MAX_SIZE; i++) {
+      assertEquals(Long.MAX_VALUE - i, seq.getLong(i));
+    }
+  }
+
+  public void testDouble() {
+    DoubleFingerSeq seq = DoubleFingerSeq.of(1.5, -0.0, Double.NaN, Double.NEGATIVE_INFINITY);
+    assertEquals(1.5, seq.getDouble(0));
+    assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(seq.getDouble(1)));
+    assertTrue(Double.isNaN(seq.getDouble(2)));
+    assertEquals(Double.NEGATIVE_INFINITY, seq.last());
+  }
+
+  public void testLongAndDoubleChunks() {
+    LongFingerSeq longs = LongFingerSeq.empty();
+    DoubleFingerSeq doubles = DoubleFingerSeq.empty();
+    for (int i = 0; i < MAX_SIZE; i++) {
+      longs = (i % 2 == 0) ? longs.append(i) : longs.prepend(-i);
+      doubles = (i % 2 == 0) ? doubles.append(i / 2.0) : doubles.prepend(-i / 2.0);
+    }
+    longs = longs.concat(LongFingerSeq.of(Long.MIN_VALUE));
+    doubles = doubles.concat(DoubleFingerSeq.of(-0.5)).concat(DoubleFingerSeq.empty());
+    assertEquals(MAX_SIZE + 1, longs.size());
+    assertEquals(MAX_SIZE + 1, doubles.size());
+    assertEquals(1 - MAX_SIZE, longs.first());
+    assertEquals(Long.MIN_VALUE, longs.last());
+    assertEquals(-0.5, doubles.last());
+
+    long[] expected = longs.toArray();
+    PrimitiveIterator.OfLong longIterator = longs.iterator();
+    PrimitiveIterator.OfDouble doubleIterator = doubles.iterator();
+    for (int i = 0; i < MAX_SIZE; i++) {
+      assertEquals(expected[i], longs.getLong(i));
+      assertEquals(expected[i], longIterator.nextLong());
+      assertEquals(expected[i] / 2.0, doubles.getDouble(i));
+      assertEquals(expected[i] / 2.0, doubleIterator.nextDouble());
+    }
+    assertEquals(Long.MIN_VALUE, longIterator.nextLong());
+    assertFalse(longIterator.hasNext());
+  }
+}
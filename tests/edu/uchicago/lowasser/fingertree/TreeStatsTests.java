@@ -0,0 +1,96 @@
+package edu.uchicago.lowasser.fingertree;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import junit.framework.TestCase;
+
+public class TreeStatsTests extends TestCase {
+  private static List<Integer> range(int n) {
+    List<Integer> list = new ArrayList<Integer>();
+    for (int i = 0; i < n; i++) {
+      list.add(i);
+    }
+    return list;
+  }
+
+  public void testEmptyAndSmall() {
+    TreeStats empty = TreeStats.of(FingerSeq.empty());
+    assertEquals(0, empty.getDepth());
+    assertEquals(0, empty.getLeafCount());
+    assertEquals(0, empty.getEstimatedBytes());
+
+    TreeStats single = TreeStats.of(FingerSeq.of(1, 2, 3));
+    assertEquals(3, single.getLength());
+    assertEquals(1, single.getDepth());
+    assertEquals(1, single.getLeafCount());
+    assertTrue(single.getEstimatedBytes() > 0);
+  }
+
+  public void testShape() {
+    int n = 100000;
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(n));
+    TreeStats stats = TreeStats.of(seq);
+    int leaves = (n + Chunk.CAPACITY - 1) / Chunk.CAPACITY;
+    assertEquals(n, stats.getLength());
+    assertEquals(leaves, stats.getLeafCount());
+    assertTrue(stats.getDepth() > 1 && stats.getDepth() <= 32 - Integer.numberOfLeadingZeros(n));
+    // Every item below the top is held by exactly one digit or node of the level above.
+    int items = leaves;
+    int digitItems = 0;
+    for (int size = 1; size <= 4; size++) {
+      digitItems += size * stats.getDigitCount(size);
+    }
+    int nodeItems = 0;
+    for (int level = 1; level < stats.getDepth(); level++) {
+      nodeItems += 2 * stats.getTwoNodeCount(level) + 3 * stats.getThreeNodeCount(level);
+      items += stats.getNodeCount(level);
+    }
+    assertEquals(items, digitItems + nodeItems);
+    assertTrue(stats.toString().startsWith("TreeStats[length=100000"));
+  }
+
+  public void testSharedFraction() {
+    FingerSeq<Integer> seq = FingerSeq.copyOf(range(100000));
+    assertEquals(1.0, TreeStats.sharedFraction(seq, seq));
+    assertTrue(TreeStats.sharedFraction(seq, seq.update(50000, -1)) > 0.99);
+    assertTrue(TreeStats.sharedFraction(seq, seq.append(-1)) > 0.99);
+    assertEquals(0.0, TreeStats.sharedFraction(seq, FingerSeq.copyOf(range(100000))));
+  }
+
+  public void testCounters() throws Exception {
+    // The build enables counting; elsewhere, the counters must stay at zero.
+    TreeCounters counters = TreeCounters.get();
+    assertEquals(TreeCounters.ENABLED, counters.isEnabled());
+    counters.reset();
+    FingerTree<Integer, Elem<Integer>> tree = FingerTree.empty();
+    for (int i = 0; i < 1000; i++) {
+      tree = tree.snoc(Elem.of(i));
+    }
+    tree.appendTree(new Elem[0], tree);
+    if (TreeCounters.ENABLED) {
+      assertTrue(counters.getSnocCount() >= 1000);
+      assertTrue(counters.getNodesAllocated() > 0);
+      assertTrue(counters.getDeepTreesAllocated() > 0);
+      assertTrue(counters.getAppendTreeCount() >= 1);
+    } else {
+      assertEquals(0, counters.getSnocCount());
+      assertEquals(0, counters.getNodesAllocated());
+      assertEquals(0, counters.getAppendTreeCount());
+    }
+
+    ObjectName name = TreeCounters.registerMBean();
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      assertEquals(counters.getSnocCount(), server.getAttribute(name, "SnocCount"));
+      server.invoke(name, "reset", new Object[0], new String[0]);
+      assertEquals(0L, counters.getSnocCount());
+    } finally {
+      server.unregisterMBean(name);
+    }
+  }
+}